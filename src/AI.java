@@ -1,4 +1,13 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * An object that enables AI and searches for the best Move
@@ -6,10 +15,106 @@ import java.util.List;
 
 public class AI {
 
+	// ways of searching: by one thread,
+	public static final int SERIAL = 0;
+	// or by the threads of a pool sharing the moves of the first ply
+	public static final int ROOT_SPLIT = 1;
+	// or by helper threads searching the same position at staggered depths,
+	// sharing only the transposition table (Lazy SMP)
+	public static final int LAZY_SMP = 2;
+	// or by the threads of a pool sharing the moves of every deep node once
+	// its first move is searched (young brothers wait)
+	public static final int YBWC = 3;
+
 	private static int noOfDeepness = 4;
+	// the longest time in milliseconds to think about a move
+	private static long moveTimeLimit = 10000;
+
+	// the way the moves are searched, SERIAL, ROOT_SPLIT, LAZY_SMP or YBWC
+	private static int searchMode = SERIAL;
+	// the number of threads of the shared pool
+	private static int threads = Runtime.getRuntime().availableProcessors();
+
+	// the deepest ply the search can reach
+	static final int MAX_PLY = 128;
+	// more moves than any chess position can have
+	static final int MAX_MOVES = 256;
+	// score of a checkmate, reduced by the ply it happens at
+	static final int MATE = 100000;
+	// more than any score
+	static final int INFINITY = 1000000;
+	// the half width of the first window around the score of the last
+	// iteration, and the first depth it is used at
+	private static final int ASPIRATION_WINDOW = 50;
+	private static final int ASPIRATION_DEPTH = 4;
+
+	// pruning of the search, both can be turned off
+	private static boolean nullMovePruning = true;
+	// the plies the search after a pass is reduced by, besides the pass
+	private static int nullMoveReduction = 2;
+	private static boolean lateMoveReductions = true;
+	// the plies a late quiet move is reduced by, by [depth][move number]
+	private static int[][] reductions = reductionTable(0.75, 2.25);
+
+	// the positions searched, shared by all the AI objects so that the
+	// results of a move are found again when searching the next one
+	private static TranspositionTable sharedTable = new TranspositionTable(16);
+	// the threads shared by all the AI objects, created when first needed
+	private static ForkJoinPool sharedPool;
+	// the size in kilobytes of the pawn table of each Searcher
+	private static int pawnHashSize = 256;
+	// the scores of the positions evaluated, shared by all the AI objects
+	// and threads, null if evaluations are not cached
+	private static EvalCache sharedEvalCache = new EvalCache(1024);
+
 	private Board board;
+	// the position at the first ply, never changed by the search
+	private BitBoard position;
+	// the search of the thread calling getBestMove()
+	private Searcher mainSearcher;
+	// all the Searchers of this AI
+	private List<Searcher> searchers = new ArrayList<Searcher>();
+	// the Searchers not in use by the tasks run on the pool, which belong to
+	// this AI and not to the threads, as the threads outlive it
+	private Queue<Searcher> freeSearchers =
+			new ConcurrentLinkedQueue<Searcher>();
+	private TranspositionTable table;
+	private EvalCache evalCache;
+	private ForkJoinPool pool;
+	private int aiSide;
 	public Move bestMove;
 	public boolean AIColor;
+	// told about each iteration completed, null if none
+	private SearchListener listener;
+	// the deepest iteration to search
+	private int maxDepth;
+	// the positions to search at most, 0 for no limit
+	private long nodeLimit;
+
+	// time control, the search stops at the hard deadline and does not start
+	// a new iteration after the soft deadline
+	private long moveTime;
+	private long timeLeft;
+	private long increment;
+	private int movesToGo;
+	private long softDeadline;
+	private long hardDeadline;
+	// the depth of the current iteration
+	private int searchDepth;
+	private volatile boolean stopped;
+	// set by stop(), which outlasts the start of a search
+	private volatile boolean aborted;
+	// while set, the search goes on until stop() or ponderHit()
+	private volatile boolean pondering;
+	// set when the main thread is done, to stop the helper threads
+	private volatile boolean helpersStopped;
+
+	// the best score and move of the first ply found so far by the threads
+	// splitting it, later moves are searched with this score as their bound
+	private AtomicInteger rootAlpha = new AtomicInteger();
+	private volatile int rootBeta;
+	private volatile int rootScore;
+	private volatile int rootBest;
 
 	/**
 	 * Create a new AI object which stores the board and the color of AI
@@ -18,118 +123,925 @@ public class AI {
 	 *            the current Board object
 	 */
 	public AI(Board b, boolean color) {
-		this.board = new Board(b, false);
-		AIColor = color;
+		this(rootOf(b, color));
+		this.board = b;
+	}
+
+	/**
+	 * Create a new AI object for a position without a Board, for the side to
+	 * move. Only getBestPackedMove() can be used to search it.
+	 * 
+	 * @param root
+	 *            the position, which is copied
+	 */
+	public AI(BitBoard root) {
+		aiSide = root.sideToMove;
+		AIColor = aiSide == BitBoard.WHITE;
+
+		position = new BitBoard();
+		position.copyFrom(root);
+		table = sharedTable;
+		evalCache = sharedEvalCache;
+		mainSearcher = new Searcher(this);
+		searchers.add(mainSearcher);
+
+		maxDepth = noOfDeepness;
+		moveTime = moveTimeLimit;
+		timeLeft = -1;
+		increment = 0;
+	}
+
+	/**
+	 * Converts a board to the position searched for a color.
+	 */
+	private static BitBoard rootOf(Board b, boolean color) {
+		BitBoard root = new BitBoard(b);
+		root.setSideToMove(color ? BitBoard.WHITE : BitBoard.BLACK);
+		return root;
+	}
+
+	/**
+	 * Tells a listener about the iterations of the search.
+	 * 
+	 * @param l
+	 *            the listener, null for none
+	 */
+	public void setListener(SearchListener l) {
+		listener = l;
+	}
+
+	/**
+	 * Changes the deepest iteration of this AI, which is the number of plies
+	 * set by updateNoOfPlies() at first.
+	 * 
+	 * @param plies
+	 *            the depth, at most MAX_PLY
+	 */
+	public void setDepth(int plies) {
+		maxDepth = Math.min(plies, MAX_PLY);
+	}
+
+	/**
+	 * Stops the search after a number of positions.
+	 * 
+	 * @param nodes
+	 *            the positions searched by all the threads, 0 for no limit
+	 */
+	public void setNodeLimit(long nodes) {
+		nodeLimit = nodes;
+	}
+
+	/**
+	 * Makes the AI use its own transposition table instead of the shared one,
+	 * such as when several games are played at the same time.
+	 * 
+	 * @param t
+	 *            the transposition table
+	 */
+	public void setTranspositionTable(TranspositionTable t) {
+		table = t;
+	}
+
+	/**
+	 * Makes the AI use its own evaluation cache instead of the shared one.
+	 * 
+	 * @param c
+	 *            the cache, null to evaluate every position
+	 */
+	public void setEvalCache(EvalCache c) {
+		evalCache = c;
+	}
+
+	/**
+	 * Returns the evaluation cache used by the Searchers, null if none.
+	 */
+	EvalCache getEvalCache() {
+		return evalCache;
+	}
+
+	/**
+	 * Makes the AI use its own threads instead of the shared ones when
+	 * searching in parallel.
+	 * 
+	 * @param p
+	 *            the pool of threads
+	 */
+	public void setThreadPool(ForkJoinPool p) {
+		pool = p;
+	}
+
+	/**
+	 * Gives the AI a fixed time for its move.
+	 * 
+	 * @param milliseconds
+	 *            the time to think, 0 for no limit
+	 */
+	public void setMoveTime(long milliseconds) {
+		moveTime = milliseconds;
+		timeLeft = -1;
+	}
+
+	/**
+	 * Gives the AI a chess clock, the time for the move is taken from it.
+	 * 
+	 * @param remaining
+	 *            the time left on the clock of the AI in milliseconds
+	 * @param inc
+	 *            the time added to the clock after each move in milliseconds
+	 */
+	public void setClock(long remaining, long inc) {
+		timeLeft = remaining;
+		increment = inc;
+	}
+
+	/**
+	 * Tells the AI how many moves it has to make before the clock gets more
+	 * time, so that the time left is shared among them.
+	 * 
+	 * @param moves
+	 *            the moves until the next time control, 0 if there is none
+	 */
+	public void setMovesToGo(int moves) {
+		movesToGo = moves;
+	}
+
+	/**
+	 * Makes the search think on the time of the opponent, as if the move
+	 * expected from the opponent was played. The time control is ignored
+	 * until ponderHit() is called.
+	 * 
+	 * @param on
+	 *            true to ponder
+	 */
+	public void setPondering(boolean on) {
+		pondering = on;
+	}
+
+	/**
+	 * Tells a pondering search that the opponent played the expected move.
+	 * The search goes on with the time control starting now.
+	 */
+	public void ponderHit() {
+		startClock();
+		pondering = false;
+	}
+
+	/**
+	 * Stops the search as soon as possible, from any thread. The best move of
+	 * the last iteration completed is returned. A search started afterwards
+	 * by this AI stops at once.
+	 */
+	public void stop() {
+		aborted = true;
+		stopped = true;
+	}
+
+	/**
+	 * Sets the deadlines of the search from the time control.
+	 */
+	private void startClock() {
+		long now = System.currentTimeMillis();
+		if (timeLeft >= 0) {
+			// use a small part of the clock, never more than is left on it
+			long moves = movesToGo > 0 ? Math.min(movesToGo + 1, 30) : 30;
+			long budget = timeLeft / moves + increment * 3 / 4;
+			long safe = Math.max(timeLeft - 50, 1);
+			hardDeadline = now + Math.min(budget * 3, safe);
+			softDeadline = now + Math.min(budget, safe) / 2;
+		} else if (moveTime > 0) {
+			hardDeadline = now + moveTime;
+			softDeadline = now + moveTime / 2;
+		} else {
+			hardDeadline = Long.MAX_VALUE;
+			softDeadline = Long.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Stops the search when the hard deadline or the node limit is reached.
+	 * Called by the searching threads from time to time.
+	 */
+	void checkClock() {
+		if (pondering) {
+			return;
+		}
+		if (System.currentTimeMillis() >= hardDeadline
+				|| (nodeLimit > 0 && getNodes() >= nodeLimit)) {
+			stopped = true;
+		}
+	}
+
+	/**
+	 * Determines if the search has to stop.
+	 */
+	boolean isStopped() {
+		return stopped;
+	}
+
+	/**
+	 * Determines if the nodes are split among the threads.
+	 */
+	boolean isSplitting() {
+		return searchMode == YBWC;
+	}
+
+	/**
+	 * Takes a Searcher for a task run on the pool, or creates one if none is
+	 * free.
+	 * 
+	 * @return the Searcher, to be given back with releaseSearcher()
+	 */
+	Searcher acquireSearcher() {
+		Searcher s = freeSearchers.poll();
+		if (s == null) {
+			s = new Searcher(this);
+			synchronized (searchers) {
+				searchers.add(s);
+			}
+		}
+		return s;
 	}
 
 	/**
-	 * Generates the best Move possible given the current Board position
+	 * Gives back a Searcher taken with acquireSearcher().
+	 * 
+	 * @param s
+	 *            the Searcher
+	 */
+	void releaseSearcher(Searcher s) {
+		freeSearchers.add(s);
+	}
+
+	/**
+	 * Determines if a move of the first ply searched by the threads has
+	 * beaten the upper bound, so that the other moves need not be searched.
+	 */
+	boolean isRootCutOff() {
+		return rootAlpha.get() >= rootBeta;
+	}
+
+	/**
+	 * Determines if the helper threads have to stop.
+	 */
+	boolean areHelpersStopped() {
+		return helpersStopped;
+	}
+
+	/**
+	 * Get the number of positions searched by each Searcher for the last
+	 * move, the one of the thread calling getBestMove() first, to see how
+	 * well the search scales with the threads. The tasks run on the pool
+	 * take whichever Searcher is free, so a count is that of the tasks it
+	 * ran rather than of one thread.
+	 * 
+	 * @return the number of positions of each Searcher
+	 */
+	public long[] getThreadNodes() {
+		synchronized (searchers) {
+			long[] counts = new long[searchers.size()];
+			for (int i = 0; i < counts.length; i++) {
+				counts[i] = searchers.get(i).nodes;
+			}
+			return counts;
+		}
+	}
+
+	/**
+	 * Get the number of positions searched by all the threads for the last
+	 * move
+	 * 
+	 * @return the number of positions
+	 */
+	public long getNodes() {
+		long total = 0;
+		synchronized (searchers) {
+			for (Searcher s : searchers) {
+				total += s.nodes;
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Get the number of evaluations of the last move found in the
+	 * evaluation cache, by all the threads
+	 * 
+	 * @return the number of hits
+	 */
+	public long getEvalCacheHits() {
+		long hits = 0;
+		synchronized (searchers) {
+			for (Searcher s : searchers) {
+				hits += s.evalHits;
+			}
+		}
+		return hits;
+	}
+
+	/**
+	 * Get the number of evaluations of the last move not found in the
+	 * evaluation cache, by all the threads
+	 * 
+	 * @return the number of misses
+	 */
+	public long getEvalCacheMisses() {
+		long misses = 0;
+		synchronized (searchers) {
+			for (Searcher s : searchers) {
+				misses += s.evalMisses;
+			}
+		}
+		return misses;
+	}
+
+	/**
+	 * Get the share of the evaluations of the last move that found their
+	 * pawn structure in the pawn tables of the threads
+	 * 
+	 * @return the hit rate, from 0 to 1
+	 */
+	public double getPawnHitRate() {
+		long probes = 0;
+		long hits = 0;
+		synchronized (searchers) {
+			for (Searcher s : searchers) {
+				probes += s.pawnTable.getProbes();
+				hits += s.pawnTable.getHits();
+			}
+		}
+		return probes == 0 ? 0 : (double) hits / probes;
+	}
+
+	/**
+	 * Generates the best Move possible given the current Board position.
+	 * Searches one ply deeper on every iteration until the depth limit or the
+	 * time limit is reached, and returns the best Move of the last iteration
+	 * that was completed.
 	 * 
 	 * @return the best Move found
 	 */
 	public Move getBestMove() {
-		Move bestMove = new Move();
-		double currentScore = -1000000;
-		// Checks if the king is in check
-		if (AIColor == false) {
-			board.blackKing.isPositionUnderThreat();
+		int move = getBestPackedMove();
+		if (move == PackedMove.NONE) {
+			bestMove = new Move();
 		} else {
-			board.whiteKing.isPositionUnderThreat();
+			bestMove = Move.decode(board, move);
+		}
+		return bestMove;
+	}
+
+	/**
+	 * Searches the position like getBestMove(), without needing a Board.
+	 * 
+	 * @return the best move found, PackedMove.NONE if there are no legal
+	 *         moves
+	 */
+	public int getBestPackedMove() {
+		long start = System.currentTimeMillis();
+		startClock();
+		stopped = aborted;
+		helpersStopped = false;
+		synchronized (searchers) {
+			for (Searcher s : searchers) {
+				s.nodes = 0;
+				s.evalHits = 0;
+				s.evalMisses = 0;
+				s.pawnTable.resetCounts();
+			}
+		}
+		table.newSearch();
+		mainSearcher.startSearch(position, table);
+
+		// Generates the legal moves for first ply
+		int[] firstPlyMoves = new int[MAX_MOVES];
+		int count = position.generateMoves(firstPlyMoves, 0);
+
+		if (count == 0) {
+			return PackedMove.NONE;
 		}
-		// Generates the moves for first ply
-		List<Move> firstPlyMoves = board.generateMoves(AIColor);
 
-		for (Move nextMove : firstPlyMoves) {
+		HelperTask[] helpers = null;
+		if (searchMode == LAZY_SMP) {
+			helpers = startHelpers(firstPlyMoves, count);
+		}
 
-			double score = alphaBetaMinimax(board.makeMove(nextMove), 1, false,
-					-1000000, 1000000);
-			board.undoMove();
+		int bestPacked = firstPlyMoves[0];
+		int score = 0;
+		for (int depth = 1; depth <= maxDepth; depth++) {
+			searchDepth = depth;
+
+			// The score is expected to be close to the one of the last
+			// iteration, a narrow window gives more cut-offs. The window is
+			// widened on the failing side while the score is outside it.
+			int alpha = -INFINITY;
+			int beta = INFINITY;
+			int delta = ASPIRATION_WINDOW;
+			if (depth >= ASPIRATION_DEPTH && Math.abs(score) < MATE - MAX_PLY) {
+				alpha = score - delta;
+				beta = score + delta;
+			}
+			while (true) {
+				int result = search(firstPlyMoves, count, depth, alpha, beta);
+				if (stopped) {
+					break;
+				}
+				if (result <= alpha) {
+					alpha = Math.max(result - delta, -INFINITY);
+				} else if (result >= beta) {
+					beta = Math.min(result + delta, INFINITY);
+				} else {
+					score = result;
+					break;
+				}
+				delta *= 2;
+			}
+			if (stopped) {
+				break;
+			}
+			// the best move is now the first, it is searched first in the
+			// next iteration
+			bestPacked = firstPlyMoves[0];
+			if (listener != null) {
+				listener.iterationDone(depth, score, getNodes(),
+						System.currentTimeMillis() - start,
+						principalVariation(bestPacked));
+			}
+
+			// a deeper iteration would not finish in time
+			if (!pondering && System.currentTimeMillis() >= softDeadline) {
+				break;
+			}
+		}
+
+		if (helpers != null) {
+			helpersStopped = true;
+			for (int i = 0; i < helpers.length; i++) {
+				helpers[i].join();
+			}
+		}
+
+		return bestPacked;
+	}
+
+	/**
+	 * Follows the best moves stored in the transposition table from the best
+	 * move of the first ply, up to the depth of the last iteration.
+	 * 
+	 * @param firstMove
+	 *            the best move of the first ply
+	 * @return the moves expected to be played
+	 */
+	private int[] principalVariation(int firstMove) {
+		BitBoard b = new BitBoard();
+		b.copyFrom(position);
+		int[] moves = new int[MAX_MOVES];
+		int[] pv = new int[searchDepth];
+		int length = 0;
+
+		int move = firstMove;
+		while (length < pv.length) {
+			pv[length++] = move;
+			b.makeMove(move);
+			long entry = table.probe(b.hash());
+			move = TranspositionTable.move(entry);
+			if (entry == 0 || !isLegal(b, move, moves)) {
+				break;
+			}
+		}
+		return Arrays.copyOf(pv, length);
+	}
+
+	/**
+	 * Determines if a move found in the transposition table can be played,
+	 * as another position may have the same entry.
+	 */
+	private static boolean isLegal(BitBoard b, int move, int[] moves) {
+		if (move == PackedMove.NONE) {
+			return false;
+		}
+		int count = b.generateMoves(moves, 0);
+		for (int i = 0; i < count; i++) {
+			if (moves[i] == move) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Searches the moves of the first ply in the way set by the search mode.
+	 * 
+	 * @param firstPlyMoves
+	 *            the legal moves of the first ply, the best one is moved first
+	 * @param count
+	 *            the number of moves
+	 * @param depth
+	 *            the depth to search to
+	 * @param alpha
+	 *            the lower bound for the possible score to be considered
+	 * @param beta
+	 *            the upper bound for the possible score to be considered
+	 * @return the score of the best move
+	 */
+	private int search(int[] firstPlyMoves, int count, int depth, int alpha,
+			int beta) {
+		if (searchMode == ROOT_SPLIT && count > 1) {
+			return searchRootSplit(firstPlyMoves, count, alpha, beta);
+		} else if (searchMode == YBWC) {
+			// the nodes can only be split by a thread of the pool
+			return getPool().invoke(
+					new RootTask(firstPlyMoves, count, depth, alpha, beta));
+		} else {
+			return searchRoot(mainSearcher, firstPlyMoves, count, depth,
+					alpha, beta);
+		}
+	}
+
+	/**
+	 * Searches all the moves of the first ply to a depth. The first move is
+	 * searched with the full window, the others with a null window that
+	 * only proves they are not better, and again with the full window if
+	 * they are (principal variation search).
+	 * 
+	 * @param s
+	 *            the Searcher of the current thread
+	 * @param firstPlyMoves
+	 *            the legal moves of the first ply, the best one is moved first
+	 * @param count
+	 *            the number of moves
+	 * @param depth
+	 *            the depth to search to
+	 * @param alpha
+	 *            the lower bound for the possible score to be considered
+	 * @param beta
+	 *            the upper bound for the possible score to be considered
+	 * @return the score of the best move
+	 */
+	private int searchRoot(Searcher s, int[] firstPlyMoves, int count,
+			int depth, int alpha, int beta) {
+		int originalAlpha = alpha;
+		int currentScore = -INFINITY;
+
+		BitBoard b = s.position;
+		for (int i = 0; i < count; i++) {
+			b.makeMove(firstPlyMoves[i]);
+			int score;
+			if (i == 0) {
+				score = -s.alphaBetaMinimax(depth - 1, 1, -beta, -alpha);
+			} else {
+				score = -s.alphaBetaMinimax(depth - 1, 1, -alpha - 1, -alpha);
+				if (score > alpha && score < beta) {
+					score = -s.alphaBetaMinimax(depth - 1, 1, -beta, -alpha);
+				}
+			}
+			b.unmakeMove(firstPlyMoves[i]);
+			if (s.stopped()) {
+				break;
+			}
 
 			// If the score of the node is larger than the highest score so far
 			if (score > currentScore) {
-				// Saves the score and Move
-				bestMove = nextMove;
 				currentScore = score;
+				if (score > alpha) {
+					// Saves the score and Move
+					alpha = score;
+					moveToFront(firstPlyMoves, i);
+					if (alpha >= beta) {
+						break;
+					}
+				}
 			}
 		}
 
-		return bestMove;
+		if (!s.stopped()) {
+			storeRoot(firstPlyMoves[0], currentScore, depth, originalAlpha,
+					beta);
+		}
+		return currentScore;
 	}
 
 	/**
+	 * Searches the moves of the first ply to the current depth with the
+	 * threads of the pool. The first move is searched alone, as it is
+	 * expected to be the best, then the other moves are shared among the
+	 * threads, each one searching on its own copy of the position with the
+	 * best score found so far as its bound.
 	 * 
-	 * @param b
-	 *            the generated future Board
-	 * @param currentPly
-	 *            the level that it is currently searching
-	 * @param isAITurn
-	 *            true it's AI's turn and false if not
+	 * @param firstPlyMoves
+	 *            the legal moves of the first ply, the best one is moved first
+	 * @param count
+	 *            the number of moves
 	 * @param alpha
 	 *            the lower bound for the possible score to be considered
 	 * @param beta
 	 *            the upper bound for the possible score to be considered
-	 * @return the lower bound for the possible score to be considered
+	 * @return the score of the best move
 	 */
-	public double alphaBetaMinimax(Board b, int currentPly, boolean isAITurn,
-			double alpha, double beta) {
+	private int searchRootSplit(int[] firstPlyMoves, int count, int alpha,
+			int beta) {
+		rootAlpha.set(alpha);
+		rootBeta = beta;
+		rootScore = -INFINITY;
+		rootBest = 0;
+		searchRootMove(mainSearcher, firstPlyMoves[0], 0);
+		if (stopped) {
+			return 0;
+		}
+
+		if (rootAlpha.get() < beta) {
+			RootMoveTask[] tasks = new RootMoveTask[count - 1];
+			for (int i = 1; i < count; i++) {
+				tasks[i - 1] = new RootMoveTask(firstPlyMoves[i], i);
+			}
+			getPool().invoke(new RootSplitTask(tasks));
+			if (stopped) {
+				return 0;
+			}
+		}
+
+		moveToFront(firstPlyMoves, rootBest);
+		storeRoot(firstPlyMoves[0], rootScore, searchDepth, alpha, beta);
+		return rootScore;
+	}
 
-		// If reached the node, evaluates board
-		if (currentPly == noOfDeepness) {
-			if (currentPly % 2 == 0) {
-				return b.evaluate(AIColor, true);
+	/**
+	 * Searches one move of the first ply with a Searcher, and makes it the
+	 * best move if it beats the best score so far. Except for the first move,
+	 * a null window is tried first as in searchRoot().
+	 * 
+	 * @param s
+	 *            the Searcher of the current thread
+	 * @param move
+	 *            the packed move
+	 * @param index
+	 *            the index of the move in the first ply moves
+	 */
+	private void searchRootMove(Searcher s, int move, int index) {
+		s.startSearch(position, table);
+		s.position.makeMove(move);
+		int alpha = rootAlpha.get();
+		int beta = rootBeta;
+		if (alpha >= beta) {
+			return;
+		}
+		// the search stops as soon as another move beats beta
+		s.rootMove = true;
+		try {
+			int score;
+			if (index == 0) {
+				score = -s.alphaBetaMinimax(searchDepth - 1, 1, -beta, -alpha);
 			} else {
-				return b.evaluate(AIColor, false);
+				score = -s.alphaBetaMinimax(searchDepth - 1, 1, -alpha - 1,
+						-alpha);
+				if (score > alpha && score < beta && !s.stopped()) {
+					score = -s.alphaBetaMinimax(searchDepth - 1, 1, -beta,
+							-alpha);
+				}
+			}
+			if (!s.stopped()) {
+				offerRootScore(score, index);
 			}
+		} finally {
+			s.rootMove = false;
 		}
-		currentPly++;
+	}
 
-		List<Move> possibleMoves;
+	/**
+	 * Makes a move of the first ply the best one if its score is higher than
+	 * the best score so far.
+	 */
+	private synchronized void offerRootScore(int score, int index) {
+		if (score > rootScore) {
+			rootScore = score;
+			if (score > rootAlpha.get()) {
+				rootAlpha.set(score);
+				rootBest = index;
+			}
+		}
+	}
 
-		// If it's AI's turn
-		if (currentPly % 2 == 1) {
-			// Generates the possible Moves and update the king's status
-			b.blackKing.isPositionUnderThreat();
-			possibleMoves = b.generateMoves(AIColor);
-			// For each possible Move, create a new Board and make the Move
-			for (Move m : possibleMoves) {
-				// Call the method recursively
-				double result = alphaBetaMinimax(b.makeMove(m), currentPly,
-						false, alpha, beta);
-				b.undoMove();
+	/**
+	 * Stores the result of the search of the first ply in the transposition
+	 * table.
+	 */
+	private void storeRoot(int move, int score, int depth, int alpha, int beta) {
+		int bound;
+		if (score >= beta) {
+			bound = TranspositionTable.LOWER;
+		} else if (score > alpha) {
+			bound = TranspositionTable.EXACT;
+		} else {
+			bound = TranspositionTable.UPPER;
+		}
+		table.store(position.hash(), move, score, depth, bound);
+	}
+
+	/**
+	 * Moves a move to the front of a list, keeping the order of the others.
+	 */
+	private static void moveToFront(int[] moves, int index) {
+		int move = moves[index];
+		System.arraycopy(moves, 0, moves, 1, index);
+		moves[0] = move;
+	}
 
-				// If the score larger than the lower bound so far, store it
+	/**
+	 * Starts the helper threads of the Lazy SMP search, one less than the
+	 * threads of the pool as the thread calling getBestMove() searches too.
+	 * 
+	 * @param firstPlyMoves
+	 *            the legal moves of the first ply
+	 * @param count
+	 *            the number of moves
+	 * @return the running helpers
+	 */
+	private HelperTask[] startHelpers(int[] firstPlyMoves, int count) {
+		ForkJoinPool p = getPool();
+		HelperTask[] helpers = new HelperTask[Math.max(
+				p.getParallelism() - 1, 0)];
+		for (int i = 0; i < helpers.length; i++) {
+			helpers[i] = new HelperTask(i + 1, firstPlyMoves, count);
+			p.execute(helpers[i]);
+		}
+		return helpers;
+	}
 
-				if (result > alpha) {
-					alpha = result;
-				}
-				// If cut-off is possible, return alpha
-				if (alpha >= beta) {
-					return alpha;
-				}
+	/**
+	 * Returns the threads to search in parallel with.
+	 */
+	private ForkJoinPool getPool() {
+		if (pool != null) {
+			return pool;
+		}
+		synchronized (AI.class) {
+			if (sharedPool == null) {
+				sharedPool = new ForkJoinPool(threads);
 			}
-			return alpha;
-		} else {
+			return sharedPool;
+		}
+	}
+
+	/**
+	 * The search of one move of the first ply by a thread of the pool.
+	 */
+	private class RootMoveTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private int move;
+		private int index;
 
-			b.whiteKing.isPositionUnderThreat();
-			possibleMoves = b.generateMoves(!AIColor);
-			for (Move m : possibleMoves) {
+		RootMoveTask(int move, int index) {
+			this.move = move;
+			this.index = index;
+		}
 
-				double result = alphaBetaMinimax(b.makeMove(m), currentPly,
-						true, alpha, beta);
-				b.undoMove();
-				// If the score lower than the upper bound so far, store it
-				if (result < beta) {
-					beta = result;
+		@Override
+		protected void compute() {
+			if (!stopped) {
+				Searcher s = acquireSearcher();
+				try {
+					searchRootMove(s, move, index);
+				} finally {
+					releaseSearcher(s);
 				}
-				// If cut-off is possible, return beta
-				if (beta <= alpha) {
-					return beta;
+			}
+		}
+	}
+
+	/**
+	 * A helper thread of the Lazy SMP search. It searches the same position
+	 * as the main thread, deepening until the main thread is done. Odd
+	 * helpers search one ply deeper and each helper starts from a different
+	 * move, so that the threads do not all search the same nodes at the
+	 * same time, and fill the transposition table for each other.
+	 */
+	private class HelperTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private int id;
+		private int[] moves;
+		private int count;
+
+		HelperTask(int id, int[] firstPlyMoves, int count) {
+			this.id = id;
+			this.count = count;
+			moves = new int[count];
+			for (int i = 0; i < count; i++) {
+				moves[i] = firstPlyMoves[(i + id) % count];
+			}
+		}
+
+		@Override
+		protected void compute() {
+			Searcher s = acquireSearcher();
+			s.helper = true;
+			try {
+				for (int depth = 1 + id % 2; depth <= maxDepth
+						&& !s.stopped(); depth++) {
+					s.startSearch(position, table);
+					searchRoot(s, moves, count, depth, -INFINITY, INFINITY);
 				}
+			} finally {
+				s.helper = false;
+				releaseSearcher(s);
 			}
-			return beta;
 		}
 	}
 
+	/**
+	 * The search of all the moves of the first ply by a thread of the pool,
+	 * with the Searcher of the main thread, so that the nodes below can be
+	 * split among the threads.
+	 */
+	private class RootTask extends RecursiveTask<Integer> {
+
+		private static final long serialVersionUID = 1L;
+
+		private int[] moves;
+		private int count;
+		private int depth;
+		private int alpha;
+		private int beta;
+
+		RootTask(int[] firstPlyMoves, int count, int depth, int alpha,
+				int beta) {
+			moves = firstPlyMoves;
+			this.count = count;
+			this.depth = depth;
+			this.alpha = alpha;
+			this.beta = beta;
+		}
+
+		@Override
+		protected Integer compute() {
+			return searchRoot(mainSearcher, moves, count, depth, alpha, beta);
+		}
+	}
+
+	/**
+	 * Runs the searches of the moves of the first ply in parallel.
+	 */
+	private static class RootSplitTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private RootMoveTask[] tasks;
+
+		RootSplitTask(RootMoveTask[] tasks) {
+			this.tasks = tasks;
+		}
+
+		@Override
+		protected void compute() {
+			invokeAll(tasks);
+		}
+	}
+
+	/**
+	 * Change the way the AI searches
+	 * 
+	 * @param mode
+	 *            SERIAL, ROOT_SPLIT, LAZY_SMP or YBWC
+	 */
+	public static void updateSearchMode(int mode) {
+		searchMode = mode;
+	}
+
+	/**
+	 * Get the way the AI searches
+	 * 
+	 * @return SERIAL, ROOT_SPLIT, LAZY_SMP or YBWC
+	 */
+	public static int getSearchMode() {
+		return searchMode;
+	}
+
+	/**
+	 * Change the number of threads shared by the AI objects to search in
+	 * parallel
+	 * 
+	 * @param n
+	 *            the number of threads
+	 */
+	public static synchronized void updateThreads(int n) {
+		threads = Math.max(n, 1);
+		if (sharedPool != null) {
+			sharedPool.shutdown();
+			sharedPool = null;
+		}
+	}
+
+	/**
+	 * Get the number of threads shared by the AI objects
+	 * 
+	 * @return the number of threads
+	 */
+	public static int getThreads() {
+		return threads;
+	}
+
 	/**
 	 * Change the number of plies to look ahead
 	 * 
@@ -140,6 +1052,78 @@ public class AI {
 		noOfDeepness = noOfPlies;
 	}
 
+	/**
+	 * Change the longest time the AI thinks about a move
+	 * 
+	 * @param milliseconds
+	 *            the time limit, 0 for no limit
+	 */
+	public static void updateMoveTimeLimit(long milliseconds) {
+		moveTimeLimit = milliseconds;
+	}
+
+	/**
+	 * Get the longest time the AI thinks about a move
+	 * 
+	 * @return the time limit in milliseconds
+	 */
+	public static long getMoveTimeLimit() {
+		return moveTimeLimit;
+	}
+
+	/**
+	 * Change the size of the transposition table shared by the AI objects,
+	 * which empties it
+	 * 
+	 * @param megabytes
+	 *            the size in megabytes
+	 */
+	public static void updateHashSize(int megabytes) {
+		sharedTable.resize(megabytes);
+	}
+
+	/**
+	 * Change the size of the pawn table of each thread, used by the AI
+	 * objects created afterwards
+	 * 
+	 * @param kilobytes
+	 *            the size in kilobytes
+	 */
+	public static void updatePawnHashSize(int kilobytes) {
+		pawnHashSize = kilobytes;
+	}
+
+	/**
+	 * Get the size of the pawn table of each thread
+	 * 
+	 * @return the size in kilobytes
+	 */
+	public static int getPawnHashSize() {
+		return pawnHashSize;
+	}
+
+	/**
+	 * Change the size of the evaluation cache shared by the AI objects,
+	 * which empties it, used by the AI objects created afterwards
+	 * 
+	 * @param kilobytes
+	 *            the size in kilobytes, 0 to evaluate every position
+	 */
+	public static void updateEvalCacheSize(int kilobytes) {
+		sharedEvalCache = kilobytes > 0 ? new EvalCache(kilobytes) : null;
+	}
+
+	/**
+	 * Empty the transposition table and the evaluation cache shared by the
+	 * AI objects, such as when a new game starts
+	 */
+	public static void clearHash() {
+		sharedTable.clear();
+		if (sharedEvalCache != null) {
+			sharedEvalCache.clear();
+		}
+	}
+
 	/**
 	 * Get the number of plies to look ahead
 	 * 
@@ -149,4 +1133,147 @@ public class AI {
 		return noOfDeepness;
 	}
 
+	/**
+	 * Turn null move pruning on or off. When on, a position is not searched
+	 * if passing the turn to the opponent still fails high in a reduced
+	 * search.
+	 * 
+	 * @param on
+	 *            true to prune
+	 */
+	public static void updateNullMovePruning(boolean on) {
+		nullMovePruning = on;
+	}
+
+	/**
+	 * Determine if null move pruning is on
+	 * 
+	 * @return true if it is on
+	 */
+	public static boolean isNullMovePruning() {
+		return nullMovePruning;
+	}
+
+	/**
+	 * Change the number of plies the search after a null move is reduced by
+	 * 
+	 * @param plies
+	 *            the reduction, besides the ply of the null move
+	 */
+	public static void updateNullMoveReduction(int plies) {
+		nullMoveReduction = plies;
+	}
+
+	/**
+	 * Get the number of plies the search after a null move is reduced by
+	 * 
+	 * @return the reduction
+	 */
+	public static int getNullMoveReduction() {
+		return nullMoveReduction;
+	}
+
+	/**
+	 * Turn late move reductions on or off. When on, the quiet moves ordered
+	 * last are searched less deep, and again at full depth if they turn out
+	 * better than expected.
+	 * 
+	 * @param on
+	 *            true to reduce
+	 */
+	public static void updateLateMoveReductions(boolean on) {
+		lateMoveReductions = on;
+	}
+
+	/**
+	 * Determine if late move reductions are on
+	 * 
+	 * @return true if they are on
+	 */
+	public static boolean isLateMoveReductions() {
+		return lateMoveReductions;
+	}
+
+	/**
+	 * Turn the attack terms of the evaluation on or off: mobility, attacks
+	 * near the kings and hanging pieces. The evaluation cache is emptied, as
+	 * the scores in it change.
+	 * 
+	 * @param on
+	 *            true to evaluate them
+	 */
+	public static void updateAttackEvaluation(boolean on) {
+		Evaluation.setAttackTerms(on);
+		if (sharedEvalCache != null) {
+			sharedEvalCache.clear();
+		}
+	}
+
+	/**
+	 * Load the values of the evaluation from a file written by the tuner,
+	 * used by the AI objects created afterwards. The transposition table and
+	 * the evaluation cache are emptied, as the scores in them change.
+	 * 
+	 * @param path
+	 *            the file of values
+	 * @throws IOException
+	 *             if the file cannot be read or is not valid
+	 */
+	public static void loadEvaluation(String path) throws IOException {
+		Evaluation.load(path);
+		clearHash();
+	}
+
+	/**
+	 * Determine if the attack terms of the evaluation are on
+	 * 
+	 * @return true if they are on
+	 */
+	public static boolean isAttackEvaluation() {
+		return Evaluation.isAttackTerms();
+	}
+
+	/**
+	 * Change the late move reductions. A move is reduced by base + ln(depth)
+	 * * ln(move number) / divisor plies, rounded down.
+	 * 
+	 * @param base
+	 *            the reduction of all the late moves
+	 * @param divisor
+	 *            the larger, the smaller the reductions of deep searches and
+	 *            very late moves
+	 */
+	public static void updateReductionTable(double base, double divisor) {
+		reductions = reductionTable(base, divisor);
+	}
+
+	/**
+	 * Get the number of plies a late quiet move is reduced by
+	 * 
+	 * @param depth
+	 *            the depth left at the node
+	 * @param moveNumber
+	 *            the number of moves searched before it at the node
+	 * @return the reduction
+	 */
+	static int lateMoveReduction(int depth, int moveNumber) {
+		return reductions[Math.min(depth, 63)][Math.min(moveNumber, 63)];
+	}
+
+	/**
+	 * Computes the late move reductions by depth and move number.
+	 */
+	private static int[][] reductionTable(double base, double divisor) {
+		int[][] table = new int[64][64];
+		for (int depth = 1; depth < 64; depth++) {
+			for (int move = 1; move < 64; move++) {
+				double r = base + Math.log(depth) * Math.log(move) / divisor;
+				// at least one ply is left to search
+				table[depth][move] = Math.max(0,
+						Math.min((int) r, depth - 2));
+			}
+		}
+		return table;
+	}
+
 }
@@ -0,0 +1,301 @@
+/**
+ * Precomputed attack tables for every piece, using the square numbering of
+ * BitBoard. Rook and bishop attacks are looked up through magic bitboards: the
+ * occupied squares on the rays of a slider are multiplied by a magic number
+ * and shifted to give the index of the attack set in a table. All the tables
+ * are built once when the class is loaded and are never changed afterwards,
+ * so any number of threads can use them at the same time.
+ */
+public final class Attacks {
+
+	private static final long[] KNIGHT_ATTACKS = new long[64];
+	private static final long[] KING_ATTACKS = new long[64];
+	// indexed by [side][square]
+	private static final long[][] PAWN_ATTACKS = new long[2][64];
+
+	private static final long[] ROOK_MASKS = new long[64];
+	private static final long[] ROOK_MAGICS = new long[64];
+	private static final int[] ROOK_SHIFTS = new int[64];
+	private static final int[] ROOK_OFFSETS = new int[64];
+	private static final long[] ROOK_TABLE = new long[102400];
+
+	private static final long[] BISHOP_MASKS = new long[64];
+	private static final long[] BISHOP_MAGICS = new long[64];
+	private static final int[] BISHOP_SHIFTS = new int[64];
+	private static final int[] BISHOP_OFFSETS = new int[64];
+	private static final long[] BISHOP_TABLE = new long[5248];
+
+	// the squares strictly between two squares on a line, and the whole line
+	// through two squares, empty if they are not on a line
+	private static final long[][] BETWEEN = new long[64][64];
+	private static final long[][] LINE = new long[64][64];
+
+	// directions as {row shift, column shift}
+	private static final int[][] ROOK_DIRECTIONS = { { 1, 0 }, { -1, 0 },
+			{ 0, 1 }, { 0, -1 } };
+	private static final int[][] BISHOP_DIRECTIONS = { { 1, 1 }, { 1, -1 },
+			{ -1, 1 }, { -1, -1 } };
+	private static final int[][] KNIGHT_JUMPS = { { 1, 2 }, { 2, 1 },
+			{ 2, -1 }, { 1, -2 }, { -1, -2 }, { -2, -1 }, { -2, 1 },
+			{ -1, 2 } };
+
+	// seeds of the random number generator for each column of the board,
+	// chosen so that the magics are found after few attempts
+	private static final long[] SEEDS = { 728, 10316, 55013, 32803, 12281,
+			15100, 16645, 255 };
+	// state of the random number generator used to find the magics
+	private static long seed;
+
+	static {
+		for (int sq = 0; sq < 64; sq++) {
+			int row = sq & 7;
+			int col = sq >>> 3;
+			for (int[] jump : KNIGHT_JUMPS) {
+				KNIGHT_ATTACKS[sq] |= bit(row + jump[0], col + jump[1]);
+			}
+			for (int dRow = -1; dRow <= 1; dRow++) {
+				for (int dCol = -1; dCol <= 1; dCol++) {
+					if (dRow != 0 || dCol != 0) {
+						KING_ATTACKS[sq] |= bit(row + dRow, col + dCol);
+					}
+				}
+			}
+			PAWN_ATTACKS[BitBoard.WHITE][sq] = bit(row - 1, col + 1)
+					| bit(row + 1, col + 1);
+			PAWN_ATTACKS[BitBoard.BLACK][sq] = bit(row - 1, col - 1)
+					| bit(row + 1, col - 1);
+		}
+
+		int rookOffset = 0;
+		int bishopOffset = 0;
+		for (int sq = 0; sq < 64; sq++) {
+			ROOK_MASKS[sq] = relevantMask(sq, ROOK_DIRECTIONS);
+			ROOK_SHIFTS[sq] = 64 - Long.bitCount(ROOK_MASKS[sq]);
+			ROOK_OFFSETS[sq] = rookOffset;
+			ROOK_MAGICS[sq] = findMagic(sq, ROOK_DIRECTIONS, ROOK_MASKS[sq],
+					ROOK_SHIFTS[sq], ROOK_TABLE, rookOffset);
+			rookOffset += 1 << Long.bitCount(ROOK_MASKS[sq]);
+
+			BISHOP_MASKS[sq] = relevantMask(sq, BISHOP_DIRECTIONS);
+			BISHOP_SHIFTS[sq] = 64 - Long.bitCount(BISHOP_MASKS[sq]);
+			BISHOP_OFFSETS[sq] = bishopOffset;
+			BISHOP_MAGICS[sq] = findMagic(sq, BISHOP_DIRECTIONS,
+					BISHOP_MASKS[sq], BISHOP_SHIFTS[sq], BISHOP_TABLE,
+					bishopOffset);
+			bishopOffset += 1 << Long.bitCount(BISHOP_MASKS[sq]);
+		}
+
+		for (int a = 0; a < 64; a++) {
+			for (int b = 0; b < 64; b++) {
+				if (a == b) {
+					continue;
+				}
+				long ends = (1L << a) | (1L << b);
+				if ((rook(a, 0) & (1L << b)) != 0) {
+					BETWEEN[a][b] = rook(a, 1L << b) & rook(b, 1L << a);
+					LINE[a][b] = (rook(a, 0) & rook(b, 0)) | ends;
+				} else if ((bishop(a, 0) & (1L << b)) != 0) {
+					BETWEEN[a][b] = bishop(a, 1L << b) & bishop(b, 1L << a);
+					LINE[a][b] = (bishop(a, 0) & bishop(b, 0)) | ends;
+				}
+			}
+		}
+	}
+
+	private Attacks() {
+	}
+
+	/**
+	 * Returns the squares attacked by a rook.
+	 *
+	 * @param sq
+	 *            the square of the rook
+	 * @param occupied
+	 *            all the occupied squares of the board
+	 * @return the attacked squares, including the first piece on each ray
+	 */
+	public static long rook(int sq, long occupied) {
+		int index = (int) (((occupied & ROOK_MASKS[sq]) * ROOK_MAGICS[sq]) >>> ROOK_SHIFTS[sq]);
+		return ROOK_TABLE[ROOK_OFFSETS[sq] + index];
+	}
+
+	/**
+	 * Returns the squares attacked by a bishop.
+	 *
+	 * @param sq
+	 *            the square of the bishop
+	 * @param occupied
+	 *            all the occupied squares of the board
+	 * @return the attacked squares, including the first piece on each ray
+	 */
+	public static long bishop(int sq, long occupied) {
+		int index = (int) (((occupied & BISHOP_MASKS[sq]) * BISHOP_MAGICS[sq]) >>> BISHOP_SHIFTS[sq]);
+		return BISHOP_TABLE[BISHOP_OFFSETS[sq] + index];
+	}
+
+	/**
+	 * Returns the squares attacked by a queen.
+	 *
+	 * @param sq
+	 *            the square of the queen
+	 * @param occupied
+	 *            all the occupied squares of the board
+	 * @return the attacked squares, including the first piece on each ray
+	 */
+	public static long queen(int sq, long occupied) {
+		return rook(sq, occupied) | bishop(sq, occupied);
+	}
+
+	/**
+	 * Returns the squares strictly between two squares on the same row,
+	 * column or diagonal, the squares a piece can block a check on.
+	 */
+	public static long between(int a, int b) {
+		return BETWEEN[a][b];
+	}
+
+	/**
+	 * Returns all the squares of the row, column or diagonal through two
+	 * squares, the squares a piece pinned to its king can move on.
+	 */
+	public static long line(int a, int b) {
+		return LINE[a][b];
+	}
+
+	/**
+	 * Returns the squares attacked by a knight.
+	 */
+	public static long knight(int sq) {
+		return KNIGHT_ATTACKS[sq];
+	}
+
+	/**
+	 * Returns the squares attacked by a king.
+	 */
+	public static long king(int sq) {
+		return KING_ATTACKS[sq];
+	}
+
+	/**
+	 * Returns the squares attacked by a pawn.
+	 *
+	 * @param side
+	 *            the side of the pawn, BitBoard.WHITE or BitBoard.BLACK
+	 * @param sq
+	 *            the square of the pawn
+	 * @return the two (or one) squares diagonally in front of the pawn
+	 */
+	public static long pawn(int side, int sq) {
+		return PAWN_ATTACKS[side][sq];
+	}
+
+	/**
+	 * Returns the bit of a square, or 0 if the coordinate is off the board.
+	 */
+	private static long bit(int row, int col) {
+		if (row < 0 || row > 7 || col < 0 || col > 7) {
+			return 0;
+		}
+		return 1L << (col * 8 + row);
+	}
+
+	/**
+	 * Returns the squares whose occupancy matters for a slider: every square
+	 * of its rays except the last one, which is attacked whether it is
+	 * occupied or not.
+	 */
+	private static long relevantMask(int sq, int[][] directions) {
+		long mask = 0;
+		for (int[] dir : directions) {
+			int row = (sq & 7) + dir[0];
+			int col = (sq >>> 3) + dir[1];
+			while (bit(row + dir[0], col + dir[1]) != 0) {
+				mask |= bit(row, col);
+				row += dir[0];
+				col += dir[1];
+			}
+		}
+		return mask;
+	}
+
+	/**
+	 * Walks the rays of a slider square by square. Only used to fill the
+	 * tables.
+	 */
+	private static long slowAttacks(int sq, int[][] directions, long occupied) {
+		long attacks = 0;
+		for (int[] dir : directions) {
+			int row = (sq & 7) + dir[0];
+			int col = (sq >>> 3) + dir[1];
+			long b;
+			while ((b = bit(row, col)) != 0) {
+				attacks |= b;
+				if ((occupied & b) != 0) {
+					break;
+				}
+				row += dir[0];
+				col += dir[1];
+			}
+		}
+		return attacks;
+	}
+
+	/**
+	 * Tries random sparse numbers until one maps every occupancy of the mask
+	 * to a table entry without a harmful collision, and fills that part of the
+	 * table.
+	 */
+	private static long findMagic(int sq, int[][] directions, long mask,
+			int shift, long[] table, int offset) {
+		seed = SEEDS[sq >>> 3];
+		int size = 1 << Long.bitCount(mask);
+		long[] occupancies = new long[size];
+		long[] attacks = new long[size];
+
+		// enumerate every subset of the mask
+		long subset = 0;
+		for (int i = 0; i < size; i++) {
+			occupancies[i] = subset;
+			attacks[i] = slowAttacks(sq, directions, subset);
+			subset = (subset - mask) & mask;
+		}
+
+		// the attempt in which each entry was last written, so the table
+		// does not have to be cleared between attempts
+		int[] usedIn = new int[size];
+		int attempt = 0;
+		while (true) {
+			long magic = random() & random() & random();
+			if (Long.bitCount((mask * magic) & 0xFF00000000000000L) < 6) {
+				continue;
+			}
+
+			attempt++;
+			boolean fail = false;
+			for (int i = 0; i < size && !fail; i++) {
+				int index = (int) ((occupancies[i] * magic) >>> shift);
+				if (usedIn[index] != attempt) {
+					usedIn[index] = attempt;
+					table[offset + index] = attacks[i];
+				} else if (table[offset + index] != attacks[i]) {
+					fail = true;
+				}
+			}
+			if (!fail) {
+				return magic;
+			}
+		}
+	}
+
+	/**
+	 * Returns the next number of a xorshift generator. The fixed seeds make
+	 * the tables the same on every run.
+	 */
+	private static long random() {
+		seed ^= seed >>> 12;
+		seed ^= seed << 25;
+		seed ^= seed >>> 27;
+		return seed * 2685821657736338717L;
+	}
+
+}
@@ -0,0 +1,1357 @@
+/**
+ * A compact representation of a chess position made of one 64 bit long for
+ * every kind of piece. Bit number (col * 8 + row) of a bitboard stands for the
+ * square board[row][col] of a Board object, so square 0 is a1, square 7 is h1
+ * and square 63 is h8.
+ */
+public class BitBoard {
+
+	// identity numbers, the same as the ones used by the Piece class
+	public static final int PAWN = 0;
+	public static final int BISHOP = 1;
+	public static final int KNIGHT = 2;
+	public static final int ROOK = 3;
+	public static final int QUEEN = 4;
+	public static final int KING = 5;
+
+	// sides, a piece code is side * 6 + identity
+	public static final int WHITE = 0;
+	public static final int BLACK = 1;
+	public static final int EMPTY = -1;
+
+	// the position at the start of a game in Forsyth-Edwards Notation
+	public static final String START_POSITION = "rnbqkbnr/pppppppp/8/8/8/8/"
+			+ "PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+	// castling rights
+	public static final int WHITE_KING_SIDE = 1;
+	public static final int WHITE_QUEEN_SIDE = 2;
+	public static final int BLACK_KING_SIDE = 4;
+	public static final int BLACK_QUEEN_SIDE = 8;
+
+	// one bitboard for each piece code
+	public long[] pieces = new long[12];
+	// all the pieces of each side
+	public long[] occupancy = new long[2];
+	// all the pieces on the board
+	public long allPieces;
+	// the piece code on each square, EMPTY if there is none
+	public int[] squares = new int[64];
+
+	public int sideToMove;
+	public int castlingRights;
+	// the file a pawn can be captured en passant on, -1 if none
+	public int enPassantFile;
+	// the Zobrist key of the position, and the key of its pawns alone
+	private long hash;
+	private long pawnHash;
+	// the middle game and endgame scores for white and the phase of the
+	// game, kept up to date as pieces are put on and taken off squares
+	private int mgScore;
+	private int egScore;
+	private int phase;
+
+	// the state needed to undo each move made, packed by pushState(), and
+	// the key of the position before each move
+	private int[] undoStack = new int[256];
+	private long[] hashStack = new long[256];
+	private int undoCount;
+	// the moves made since the last capture or pawn move, for the fifty move
+	// rule and to know how far back a position can have been repeated
+	private int halfmoveClock;
+	// the material gained after each capture of see()
+	private int[] seeGains = new int[32];
+
+	// pieces from the least to the most valuable
+	private static final int[] SEE_ORDER = { PAWN, KNIGHT, BISHOP, ROOK,
+			QUEEN, KING };
+
+	// the letters of the identity numbers in Forsyth-Edwards Notation
+	private static final String FEN_PIECES = "pbnrqk";
+
+	// castling rights kept when a piece leaves or arrives on each square
+	private static final int[] CASTLING_MASKS = new int[64];
+
+	static {
+		for (int sq = 0; sq < 64; sq++) {
+			CASTLING_MASKS[sq] = 15;
+		}
+		CASTLING_MASKS[4] &= ~(WHITE_KING_SIDE | WHITE_QUEEN_SIDE);
+		CASTLING_MASKS[7] &= ~WHITE_KING_SIDE;
+		CASTLING_MASKS[0] &= ~WHITE_QUEEN_SIDE;
+		CASTLING_MASKS[60] &= ~(BLACK_KING_SIDE | BLACK_QUEEN_SIDE);
+		CASTLING_MASKS[63] &= ~BLACK_KING_SIDE;
+		CASTLING_MASKS[56] &= ~BLACK_QUEEN_SIDE;
+	}
+
+	/**
+	 * Creates an empty position with white to move.
+	 */
+	public BitBoard() {
+		for (int i = 0; i < 64; i++) {
+			squares[i] = EMPTY;
+		}
+		sideToMove = WHITE;
+		castlingRights = 0;
+		enPassantFile = -1;
+		hash = computeHash();
+	}
+
+	/**
+	 * Creates the bitboards of an existing board.
+	 * 
+	 * @param b
+	 *            the board to convert
+	 */
+	public BitBoard(Board b) {
+		this();
+
+		for (int row = 0; row < 8; row++) {
+			for (int col = 0; col < 8; col++) {
+				Piece p = b.getPiece(row, col);
+				if (p != null) {
+					addPiece(pieceCode(p.identity, p.color), square(row, col));
+				}
+			}
+		}
+		sideToMove = b.currentPlayer ? WHITE : BLACK;
+		castlingRights = castlingRightsOf(b);
+		enPassantFile = enPassantFileOf(b);
+		halfmoveClock = b.halfmoveClock;
+		hash = computeHash();
+	}
+
+	/**
+	 * Creates a position from a string in Forsyth-Edwards Notation, such as
+	 * "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1". The move
+	 * counters at the end may be left out, only the moves since the last
+	 * capture or pawn move are kept. Castling rights
+	 * whose king or rook is not on its home square are dropped, and so is an
+	 * en passant square no pawn can capture on.
+	 * 
+	 * @param fen
+	 *            the position in Forsyth-Edwards Notation
+	 * @throws IllegalArgumentException
+	 *             if the string is not a valid position
+	 */
+	public BitBoard(String fen) {
+		this();
+
+		String[] fields = fen.trim().split("\\s+");
+		if (fields.length < 4) {
+			throw new IllegalArgumentException("Incomplete FEN: " + fen);
+		}
+
+		// the pieces, from the 8th rank down and from the a file to the h file
+		int row = 0;
+		int col = 7;
+		for (int i = 0; i < fields[0].length(); i++) {
+			char c = fields[0].charAt(i);
+			if (c == '/') {
+				if (row != 8 || col == 0) {
+					throw new IllegalArgumentException("Bad FEN pieces: "
+							+ fields[0]);
+				}
+				row = 0;
+				col--;
+			} else if (c >= '1' && c <= '8') {
+				row += c - '0';
+			} else {
+				int identity = FEN_PIECES.indexOf(Character.toLowerCase(c));
+				if (identity < 0 || row > 7 || col < 0) {
+					throw new IllegalArgumentException("Bad FEN pieces: "
+							+ fields[0]);
+				}
+				addPiece(pieceCode(identity, Character.isUpperCase(c)),
+						square(row, col));
+				row++;
+			}
+		}
+		// every rank must fill the 8 files
+		if (row != 8 || col != 0) {
+			throw new IllegalArgumentException("Bad FEN pieces: " + fields[0]);
+		}
+		if (Long.bitCount(pieces[pieceCode(KING, true)]) != 1
+				|| Long.bitCount(pieces[pieceCode(KING, false)]) != 1) {
+			throw new IllegalArgumentException("Each side needs one king: "
+					+ fields[0]);
+		}
+
+		if (fields[1].equals("w")) {
+			sideToMove = WHITE;
+		} else if (fields[1].equals("b")) {
+			sideToMove = BLACK;
+		} else {
+			throw new IllegalArgumentException("Bad FEN side: " + fields[1]);
+		}
+
+		if (!fields[2].equals("-")) {
+			for (int i = 0; i < fields[2].length(); i++) {
+				int right = "KQkq".indexOf(fields[2].charAt(i));
+				if (right < 0) {
+					throw new IllegalArgumentException("Bad FEN castling: "
+							+ fields[2]);
+				}
+				castlingRights |= 1 << right;
+			}
+			// a right needs its king and rook still on their home squares
+			for (int sq = 0; sq < 64; sq++) {
+				if (CASTLING_MASKS[sq] != 15
+						&& squares[sq] != pieceCode(sq == 4 || sq == 60 ? KING
+								: ROOK, sq < 8)) {
+					castlingRights &= CASTLING_MASKS[sq];
+				}
+			}
+		}
+
+		if (!fields[3].equals("-")) {
+			enPassantFile = fields[3].charAt(0) - 'a';
+			// the square behind a pawn of the side not to move
+			char rank = sideToMove == WHITE ? '6' : '3';
+			if (fields[3].length() != 2 || enPassantFile < 0
+					|| enPassantFile > 7 || fields[3].charAt(1) != rank) {
+				throw new IllegalArgumentException("Bad FEN en passant: "
+						+ fields[3]);
+			}
+			// kept only if a pawn has just moved two squares past it and can
+			// be captured, as makeMove() keeps it
+			int ep = (sideToMove == WHITE ? 40 : 16) + enPassantFile;
+			int pushed = sideToMove == WHITE ? ep - 8 : ep + 8;
+			int origin = sideToMove == WHITE ? ep + 8 : ep - 8;
+			if (squares[pushed] != pieceCode(PAWN, sideToMove == BLACK)
+					|| squares[ep] != EMPTY || squares[origin] != EMPTY
+					|| (Attacks.pawn(1 - sideToMove, ep)
+							& pieces[sideToMove * 6 + PAWN]) == 0) {
+				enPassantFile = -1;
+			}
+		}
+
+		if (fields.length > 4) {
+			int clock;
+			try {
+				clock = Integer.parseInt(fields[4]);
+			} catch (NumberFormatException e) {
+				clock = -1;
+			}
+			if (clock < 0) {
+				throw new IllegalArgumentException("Bad FEN move counters: "
+						+ fen);
+			}
+			// past 100 the position is drawn anyway
+			halfmoveClock = Math.min(clock, 100);
+		}
+		hash = computeHash();
+	}
+
+	/**
+	 * Writes the position in Forsyth-Edwards Notation without the move
+	 * counters, which a BitBoard does not keep.
+	 * 
+	 * @return the pieces, the side to move, the castling rights and the en
+	 *         passant square
+	 */
+	public String toFen() {
+		StringBuffer fen = new StringBuffer();
+		for (int col = 7; col >= 0; col--) {
+			int empty = 0;
+			for (int row = 0; row < 8; row++) {
+				int piece = squares[square(row, col)];
+				if (piece == EMPTY) {
+					empty++;
+					continue;
+				}
+				if (empty > 0) {
+					fen.append(empty);
+					empty = 0;
+				}
+				char letter = FEN_PIECES.charAt(identityOf(piece));
+				fen.append(sideOf(piece) == WHITE ? Character
+						.toUpperCase(letter) : letter);
+			}
+			if (empty > 0) {
+				fen.append(empty);
+			}
+			if (col > 0) {
+				fen.append('/');
+			}
+		}
+
+		fen.append(sideToMove == WHITE ? " w " : " b ");
+
+		if (castlingRights == 0) {
+			fen.append('-');
+		}
+		for (int right = 0; right < 4; right++) {
+			if ((castlingRights & 1 << right) != 0) {
+				fen.append("KQkq".charAt(right));
+			}
+		}
+
+		if (enPassantFile < 0) {
+			fen.append(" -");
+		} else {
+			fen.append(' ').append((char) ('a' + enPassantFile))
+					.append(sideToMove == WHITE ? '6' : '3');
+		}
+		return fen.toString();
+	}
+
+	/**
+	 * Finds the castling rights of a board. A side may castle as long as its
+	 * king and the rook have not moved, neither by the flags of the pieces
+	 * nor by a move in the history of the board.
+	 * 
+	 * @param b
+	 *            the board
+	 * @return the castling rights
+	 */
+	public static int castlingRightsOf(Board b) {
+		int rights = 0;
+		if (unmoved(b, KING, true, 4, 0)) {
+			if (unmoved(b, ROOK, true, 7, 0)) {
+				rights |= WHITE_KING_SIDE;
+			}
+			if (unmoved(b, ROOK, true, 0, 0)) {
+				rights |= WHITE_QUEEN_SIDE;
+			}
+		}
+		if (unmoved(b, KING, false, 4, 7)) {
+			if (unmoved(b, ROOK, false, 7, 7)) {
+				rights |= BLACK_KING_SIDE;
+			}
+			if (unmoved(b, ROOK, false, 0, 7)) {
+				rights |= BLACK_QUEEN_SIDE;
+			}
+		}
+		return rights;
+	}
+
+	/**
+	 * Finds the file a pawn can be captured en passant on. The pawns of the
+	 * side to move know if they can capture en passant.
+	 * 
+	 * @param b
+	 *            the board
+	 * @return the en passant file, -1 if none
+	 */
+	public static int enPassantFileOf(Board b) {
+		int file = -1;
+		int pawnCol = b.currentPlayer ? 4 : 3;
+		for (int row = 0; row < 8; row++) {
+			Piece p = b.getPiece(row, pawnCol);
+			if (p != null && p.identity == PAWN && p.color == b.currentPlayer) {
+				Pawn pawn = (Pawn) p;
+				if (pawn.canEnPassantLeft) {
+					file = row - 1;
+				} else if (pawn.canEnPassantRight) {
+					file = row + 1;
+				}
+			}
+		}
+		return file;
+	}
+
+	/**
+	 * Determines if the given square holds a piece that has never moved. A
+	 * move from or to the square means the piece there is not the original
+	 * one or has left it and come back.
+	 */
+	private static boolean unmoved(Board b, int identity, boolean color,
+			int row, int col) {
+		Piece p = b.getPiece(row, col);
+		if (p == null || p.identity != identity || p.color != color
+				|| p.hasMoved) {
+			return false;
+		}
+		for (int i = 0; i < b.history.getSize(); i++) {
+			Move m = (Move) b.history.get(i);
+			if ((m.startRow == row && m.startCol == col)
+					|| (m.endRow == row && m.endCol == col)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Creates a Board object holding the same position.
+	 * 
+	 * @return the new board
+	 */
+	public Board toBoard() {
+		Board b = new Board(8);
+		for (int row = 0; row < 8; row++) {
+			for (int col = 0; col < 8; col++) {
+				b.setBoard(row, col, null);
+			}
+		}
+
+		for (int sq = 0; sq < 64; sq++) {
+			int piece = squares[sq];
+			if (piece == EMPTY) {
+				continue;
+			}
+			int row = sq & 7;
+			int col = sq >>> 3;
+			boolean color = sideOf(piece) == WHITE;
+			Piece p;
+			switch (identityOf(piece)) {
+			case PAWN:
+				p = new Pawn(color, row, col);
+				break;
+			case BISHOP:
+				p = new Bishop(color, row, col);
+				break;
+			case KNIGHT:
+				p = new Knight(color, row, col);
+				break;
+			case ROOK:
+				p = new Rook(color, row, col);
+				break;
+			case QUEEN:
+				p = new Queen(color, row, col);
+				break;
+			default:
+				p = new King(color, row, col);
+				if (color) {
+					b.whiteKing = (King) p;
+				} else {
+					b.blackKing = (King) p;
+				}
+			}
+			// kings and rooks which lost their castling rights count as moved
+			p.hasMoved = true;
+			b.setBoard(row, col, p);
+		}
+
+		markUnmoved(b, 4, 0, WHITE_KING_SIDE | WHITE_QUEEN_SIDE);
+		markUnmoved(b, 7, 0, WHITE_KING_SIDE);
+		markUnmoved(b, 0, 0, WHITE_QUEEN_SIDE);
+		markUnmoved(b, 4, 7, BLACK_KING_SIDE | BLACK_QUEEN_SIDE);
+		markUnmoved(b, 7, 7, BLACK_KING_SIDE);
+		markUnmoved(b, 0, 7, BLACK_QUEEN_SIDE);
+
+		b.currentPlayer = sideToMove == WHITE;
+
+		// give the en passant capture back to the pawns next to the target
+		if (enPassantFile >= 0) {
+			int pawnCol = sideToMove == WHITE ? 4 : 3;
+			int ownPawn = pieceCode(PAWN, sideToMove == WHITE);
+			if (enPassantFile > 0
+					&& squares[square(enPassantFile - 1, pawnCol)] == ownPawn) {
+				((Pawn) b.getPiece(enPassantFile - 1, pawnCol)).canEnPassantRight = true;
+			}
+			if (enPassantFile < 7
+					&& squares[square(enPassantFile + 1, pawnCol)] == ownPawn) {
+				((Pawn) b.getPiece(enPassantFile + 1, pawnCol)).canEnPassantLeft = true;
+			}
+		}
+		b.updateThreats();
+		b.resetHash();
+		return b;
+	}
+
+	/**
+	 * Marks the piece on the given square as unmoved if any of the given
+	 * castling rights is still available.
+	 */
+	private void markUnmoved(Board b, int row, int col, int rights) {
+		Piece p = b.getPiece(row, col);
+		if (p != null && (castlingRights & rights) != 0) {
+			p.hasMoved = false;
+		}
+	}
+
+	/**
+	 * Makes this position a copy of another one without creating new arrays.
+	 * 
+	 * @param other
+	 *            the position to copy
+	 */
+	public void copyFrom(BitBoard other) {
+		System.arraycopy(other.pieces, 0, pieces, 0, 12);
+		System.arraycopy(other.occupancy, 0, occupancy, 0, 2);
+		System.arraycopy(other.squares, 0, squares, 0, 64);
+		allPieces = other.allPieces;
+		sideToMove = other.sideToMove;
+		castlingRights = other.castlingRights;
+		enPassantFile = other.enPassantFile;
+		hash = other.hash;
+		pawnHash = other.pawnHash;
+		mgScore = other.mgScore;
+		egScore = other.egScore;
+		phase = other.phase;
+		if (undoStack.length < other.undoStack.length) {
+			undoStack = new int[other.undoStack.length];
+			hashStack = new long[other.undoStack.length];
+		}
+		System.arraycopy(other.undoStack, 0, undoStack, 0, other.undoCount);
+		System.arraycopy(other.hashStack, 0, hashStack, 0, other.undoCount);
+		undoCount = other.undoCount;
+		halfmoveClock = other.halfmoveClock;
+	}
+
+	/**
+	 * Changes the side to move. An en passant capture is lost, since it
+	 * belonged to the other side.
+	 * 
+	 * @param side
+	 *            WHITE or BLACK
+	 */
+	public void setSideToMove(int side) {
+		if (side != sideToMove) {
+			sideToMove = side;
+			enPassantFile = -1;
+			hash = computeHash();
+		}
+	}
+
+	/**
+	 * Returns the Zobrist key of the position, which is kept up to date as
+	 * moves are made and taken back.
+	 * 
+	 * @return the 64 bit key
+	 */
+	public long hash() {
+		return hash;
+	}
+
+	/**
+	 * Returns the key of the pawns of the position, the same for all the
+	 * positions with the same pawn structure.
+	 * 
+	 * @return the 64 bit key
+	 */
+	public long pawnHash() {
+		return pawnHash;
+	}
+
+	/**
+	 * Computes the Zobrist key of the position from scratch.
+	 * 
+	 * @return the 64 bit key
+	 */
+	public long computeHash() {
+		long key = Zobrist.state(castlingRights, enPassantFile);
+		if (sideToMove == BLACK) {
+			key ^= Zobrist.SIDE;
+		}
+		for (int sq = 0; sq < 64; sq++) {
+			if (squares[sq] != EMPTY) {
+				key ^= Zobrist.PIECES[squares[sq]][sq];
+			}
+		}
+		return key;
+	}
+
+	/**
+	 * Adds up the scores of the pieces again from scratch, after the values
+	 * of Evaluation have changed.
+	 */
+	public void computeScores() {
+		mgScore = 0;
+		egScore = 0;
+		phase = 0;
+		for (int sq = 0; sq < 64; sq++) {
+			int piece = squares[sq];
+			if (piece != EMPTY) {
+				mgScore += Evaluation.MG[piece][sq];
+				egScore += Evaluation.EG[piece][sq];
+				phase += Evaluation.PHASE[piece];
+			}
+		}
+	}
+
+	/**
+	 * Writes all the legal moves of the side to move into an array.
+	 * 
+	 * @param moves
+	 *            the array the packed moves are written to
+	 * @param count
+	 *            the index of the first move to write
+	 * @return the index after the last move written
+	 */
+	public int generateMoves(int[] moves, int count) {
+		return generate(moves, count, false);
+	}
+
+	/**
+	 * Writes the legal captures of the side to move into an array, with the
+	 * promotions to each piece when a pawn captures on the last rank, and
+	 * the promotions to a queen when it moves there without capturing. These
+	 * are the moves searched by the quiescence search.
+	 * 
+	 * @param moves
+	 *            the array the packed moves are written to
+	 * @param count
+	 *            the index of the first move to write
+	 * @return the index after the last move written
+	 */
+	public int generateCaptures(int[] moves, int count) {
+		return generate(moves, count, true);
+	}
+
+	/**
+	 * Writes the legal moves of the side to move into an array in a single
+	 * pass. The pieces giving check and the pieces pinned to the king are
+	 * found first; when in check the other pieces may only capture the
+	 * checking piece or block it, and a pinned piece may only move along its
+	 * pin. The king may only move to squares that are not attacked.
+	 * 
+	 * @param moves
+	 *            the array the packed moves are written to
+	 * @param count
+	 *            the index of the first move to write
+	 * @param capturesOnly
+	 *            true to write only the captures, all their promotions, and
+	 *            the promotions to a queen without a capture
+	 * @return the index after the last move written
+	 */
+	private int generate(int[] moves, int count, boolean capturesOnly) {
+		int side = sideToMove;
+		int base = side * 6;
+		long own = occupancy[side];
+		long enemies = occupancy[1 - side];
+		long targetMask = capturesOnly ? enemies : ~own;
+		int king = kingSquare(side);
+
+		// the king may not stay on the line of a slider checking it, so its
+		// squares are tested without it on the board
+		long kingTargets = Attacks.king(king) & targetMask;
+		long withoutKing = allPieces ^ (1L << king);
+		while (kingTargets != 0) {
+			int to = Long.numberOfTrailingZeros(kingTargets);
+			kingTargets &= kingTargets - 1;
+			if ((attackersTo(to, withoutKing) & enemies) == 0) {
+				int flags = (enemies & (1L << to)) != 0 ? PackedMove.CAPTURE
+						: PackedMove.QUIET;
+				moves[count++] = PackedMove.encode(king, to, flags);
+			}
+		}
+
+		// against two checking pieces only the king can move
+		long checkers = attackersTo(king, allPieces) & enemies;
+		if ((checkers & (checkers - 1)) != 0) {
+			return count;
+		}
+		long checkMask = -1L;
+		if (checkers != 0) {
+			checkMask = checkers
+					| Attacks.between(king, Long.numberOfTrailingZeros(checkers));
+		}
+		long pinned = pinnedPieces(side, king);
+
+		// pawns
+		int forward = side == WHITE ? 8 : -8;
+		int startCol = side == WHITE ? 1 : 6;
+		int epSquare = -1;
+		if (enPassantFile >= 0) {
+			epSquare = (side == WHITE ? 40 : 16) + enPassantFile;
+		}
+		long pawns = pieces[base + PAWN];
+		while (pawns != 0) {
+			int from = Long.numberOfTrailingZeros(pawns);
+			pawns &= pawns - 1;
+			long allowed = checkMask;
+			if ((pinned & (1L << from)) != 0) {
+				allowed &= Attacks.line(king, from);
+			}
+			int to = from + forward;
+
+			if ((allPieces & (1L << to)) == 0) {
+				if ((allowed & (1L << to)) != 0) {
+					if (!capturesOnly) {
+						count = addPawnMoves(moves, count, from, to, false);
+					} else if (to >= 56 || to < 8) {
+						moves[count++] = PackedMove.encode(from, to,
+								PackedMove.PROMOTION + 3);
+					}
+				}
+				if (!capturesOnly && (from >>> 3) == startCol
+						&& (allPieces & (1L << (to + forward))) == 0
+						&& (allowed & (1L << (to + forward))) != 0) {
+					moves[count++] = PackedMove.encode(from, to + forward,
+							PackedMove.DOUBLE_PUSH);
+				}
+			}
+
+			long targets = Attacks.pawn(side, from) & enemies & allowed;
+			while (targets != 0) {
+				to = Long.numberOfTrailingZeros(targets);
+				targets &= targets - 1;
+				count = addPawnMoves(moves, count, from, to, true);
+			}
+
+			if (epSquare >= 0
+					&& (Attacks.pawn(side, from) & (1L << epSquare)) != 0
+					&& isLegalEnPassant(from, epSquare, king)) {
+				moves[count++] = PackedMove.encode(from, epSquare,
+						PackedMove.EN_PASSANT);
+			}
+		}
+
+		// pieces, a pinned knight can never move
+		targetMask &= checkMask;
+		long knights = pieces[base + KNIGHT] & ~pinned;
+		while (knights != 0) {
+			int from = Long.numberOfTrailingZeros(knights);
+			knights &= knights - 1;
+			count = addMoves(moves, count, from, Attacks.knight(from)
+					& targetMask, enemies);
+		}
+		long bishops = pieces[base + BISHOP] | pieces[base + QUEEN];
+		while (bishops != 0) {
+			int from = Long.numberOfTrailingZeros(bishops);
+			bishops &= bishops - 1;
+			long targets = Attacks.bishop(from, allPieces) & targetMask;
+			if ((pinned & (1L << from)) != 0) {
+				targets &= Attacks.line(king, from);
+			}
+			count = addMoves(moves, count, from, targets, enemies);
+		}
+		long rooks = pieces[base + ROOK] | pieces[base + QUEEN];
+		while (rooks != 0) {
+			int from = Long.numberOfTrailingZeros(rooks);
+			rooks &= rooks - 1;
+			long targets = Attacks.rook(from, allPieces) & targetMask;
+			if ((pinned & (1L << from)) != 0) {
+				targets &= Attacks.line(king, from);
+			}
+			count = addMoves(moves, count, from, targets, enemies);
+		}
+
+		// castling, the king may not be in check or pass an attacked square
+		if (capturesOnly || checkers != 0) {
+			return count;
+		}
+		int kingSide = side == WHITE ? WHITE_KING_SIDE : BLACK_KING_SIDE;
+		int queenSide = side == WHITE ? WHITE_QUEEN_SIDE : BLACK_QUEEN_SIDE;
+		if ((castlingRights & kingSide) != 0
+				&& (allPieces & (3L << (king + 1))) == 0
+				&& !isAttacked(king + 1, 1 - side)
+				&& !isAttacked(king + 2, 1 - side)) {
+			moves[count++] = PackedMove.encode(king, king + 2,
+					PackedMove.KING_CASTLE);
+		}
+		if ((castlingRights & queenSide) != 0
+				&& (allPieces & (7L << (king - 3))) == 0
+				&& !isAttacked(king - 1, 1 - side)
+				&& !isAttacked(king - 2, 1 - side)) {
+			moves[count++] = PackedMove.encode(king, king - 2,
+					PackedMove.QUEEN_CASTLE);
+		}
+		return count;
+	}
+
+	/**
+	 * Finds the pieces of a side that cannot leave the line between their
+	 * king and an enemy slider without exposing the king.
+	 * 
+	 * @param side
+	 *            WHITE or BLACK
+	 * @param king
+	 *            the square of the king of the side
+	 * @return the pinned pieces
+	 */
+	private long pinnedPieces(int side, int king) {
+		int enemyBase = (1 - side) * 6;
+		long queens = pieces[enemyBase + QUEEN];
+		long snipers = (Attacks.rook(king, 0) & (pieces[enemyBase + ROOK]
+				| queens))
+				| (Attacks.bishop(king, 0) & (pieces[enemyBase + BISHOP]
+				| queens));
+		long pinned = 0;
+		while (snipers != 0) {
+			int sniper = Long.numberOfTrailingZeros(snipers);
+			snipers &= snipers - 1;
+			long blockers = Attacks.between(king, sniper) & allPieces;
+			if (blockers != 0 && (blockers & (blockers - 1)) == 0) {
+				pinned |= blockers & occupancy[side];
+			}
+		}
+		return pinned;
+	}
+
+	/**
+	 * Determines if an en passant capture leaves the own king safe. Both
+	 * pawns leave the row of the king at once, so the test is done on the
+	 * position after the capture.
+	 */
+	private boolean isLegalEnPassant(int from, int to, int king) {
+		int capturedSquare = sideToMove == WHITE ? to - 8 : to + 8;
+		long captured = 1L << capturedSquare;
+		long occupied = (allPieces ^ (1L << from) ^ captured) | (1L << to);
+		long enemies = occupancy[1 - sideToMove] & ~captured;
+		return (attackersTo(king, occupied) & enemies) == 0;
+	}
+
+	/**
+	 * Writes a move to every target square of a piece.
+	 */
+	private static int addMoves(int[] moves, int count, int from,
+			long targets, long enemies) {
+		while (targets != 0) {
+			int to = Long.numberOfTrailingZeros(targets);
+			targets &= targets - 1;
+			int flags = (enemies & (1L << to)) != 0 ? PackedMove.CAPTURE
+					: PackedMove.QUIET;
+			moves[count++] = PackedMove.encode(from, to, flags);
+		}
+		return count;
+	}
+
+	/**
+	 * Writes a pawn move, or the four promotions if the pawn reaches the last
+	 * column.
+	 */
+	private static int addPawnMoves(int[] moves, int count, int from, int to,
+			boolean capture) {
+		if (to >= 56 || to < 8) {
+			int flags = capture ? PackedMove.PROMOTION_CAPTURE
+					: PackedMove.PROMOTION;
+			// queen first, it is almost always the best choice
+			for (int i = 3; i >= 0; i--) {
+				moves[count++] = PackedMove.encode(from, to, flags + i);
+			}
+		} else {
+			moves[count++] = PackedMove.encode(from, to,
+					capture ? PackedMove.CAPTURE : PackedMove.QUIET);
+		}
+		return count;
+	}
+
+	/**
+	 * Plays a packed move on this position.
+	 * 
+	 * @param move
+	 *            the packed move, generated for this position
+	 */
+	public void makeMove(int move) {
+		int from = PackedMove.from(move);
+		int to = PackedMove.to(move);
+		int flags = PackedMove.flags(move);
+		int side = sideToMove;
+		int piece = squares[from];
+		int captured = flags == PackedMove.EN_PASSANT ? EMPTY : squares[to];
+
+		pushState(captured);
+		hash ^= Zobrist.state(castlingRights, enPassantFile) ^ Zobrist.SIDE;
+		enPassantFile = -1;
+		if (captured != EMPTY || flags == PackedMove.EN_PASSANT
+				|| identityOf(piece) == PAWN) {
+			halfmoveClock = 0;
+		} else {
+			halfmoveClock++;
+		}
+
+		// capture
+		if (flags == PackedMove.EN_PASSANT) {
+			removePiece((1 - side) * 6 + PAWN, side == WHITE ? to - 8 : to + 8);
+		} else if (captured != EMPTY) {
+			removePiece(captured, to);
+		}
+
+		// move the piece, changing it if it is a promotion
+		if (PackedMove.isPromotion(move)) {
+			removePiece(piece, from);
+			addPiece(side * 6 + PackedMove.promotion(move), to);
+		} else {
+			movePiece(piece, from, to);
+		}
+
+		// castling also moves the rook
+		if (flags == PackedMove.KING_CASTLE) {
+			movePiece(side * 6 + ROOK, to + 1, to - 1);
+		} else if (flags == PackedMove.QUEEN_CASTLE) {
+			movePiece(side * 6 + ROOK, to - 2, to + 1);
+		}
+
+		// an en passant capture is only recorded if an enemy pawn can make it
+		if (flags == PackedMove.DOUBLE_PUSH) {
+			int passed = (from + to) >>> 1;
+			if ((Attacks.pawn(side, passed) & pieces[(1 - side) * 6 + PAWN]) != 0) {
+				enPassantFile = from & 7;
+			}
+		}
+
+		castlingRights &= CASTLING_MASKS[from] & CASTLING_MASKS[to];
+		hash ^= Zobrist.state(castlingRights, enPassantFile);
+		sideToMove = 1 - side;
+	}
+
+	/**
+	 * Takes back the last move made with makeMove().
+	 * 
+	 * @param move
+	 *            the packed move to take back
+	 */
+	public void unmakeMove(int move) {
+		int from = PackedMove.from(move);
+		int to = PackedMove.to(move);
+		int flags = PackedMove.flags(move);
+		int captured = popState();
+		int side = 1 - sideToMove;
+		sideToMove = side;
+
+		// move the piece back, changing it back to a pawn if it was promoted
+		if (PackedMove.isPromotion(move)) {
+			removePiece(squares[to], to);
+			addPiece(side * 6 + PAWN, from);
+		} else {
+			movePiece(squares[to], to, from);
+		}
+
+		// put the rook back in the corner
+		if (flags == PackedMove.KING_CASTLE) {
+			movePiece(side * 6 + ROOK, to - 1, to + 1);
+		} else if (flags == PackedMove.QUEEN_CASTLE) {
+			movePiece(side * 6 + ROOK, to + 1, to - 2);
+		}
+
+		// return the captured piece
+		if (flags == PackedMove.EN_PASSANT) {
+			addPiece((1 - side) * 6 + PAWN, side == WHITE ? to - 8 : to + 8);
+		} else if (captured != EMPTY) {
+			addPiece(captured, to);
+		}
+		hash = hashStack[undoCount];
+	}
+
+	/**
+	 * Passes the turn to the other side without moving, used by the search
+	 * to see if the side to move is so far ahead that even passing is good
+	 * enough.
+	 */
+	public void makeNullMove() {
+		pushState(EMPTY);
+		hash ^= Zobrist.state(castlingRights, enPassantFile) ^ Zobrist.SIDE;
+		enPassantFile = -1;
+		// the positions before the pass do not count as repeated after it
+		halfmoveClock = 0;
+		hash ^= Zobrist.state(castlingRights, enPassantFile);
+		sideToMove = 1 - sideToMove;
+	}
+
+	/**
+	 * Takes back the last pass made with makeNullMove().
+	 */
+	public void unmakeNullMove() {
+		popState();
+		sideToMove = 1 - sideToMove;
+		hash = hashStack[undoCount];
+	}
+
+	/**
+	 * Determines if a side has any piece other than its king and pawns.
+	 * Without one, passing may be better than any move (zugzwang).
+	 * 
+	 * @param side
+	 *            WHITE or BLACK
+	 * @return true if the side has a knight, bishop, rook or queen
+	 */
+	public boolean hasNonPawnMaterial(int side) {
+		int base = side * 6;
+		return (pieces[base + KNIGHT] | pieces[base + BISHOP]
+				| pieces[base + ROOK] | pieces[base + QUEEN]) != 0;
+	}
+
+	/**
+	 * Determines if the position is a draw by the fifty move rule, or
+	 * repeats a position since the last capture or pawn move. The search
+	 * scores a position repeated once as a draw, since the side that could
+	 * not do better than repeat it can repeat it again.
+	 * 
+	 * @return true if the position is drawn
+	 */
+	public boolean isDraw() {
+		if (halfmoveClock >= 100) {
+			return true;
+		}
+		// the same side is to move every other ply, and at least four plies
+		// are needed to come back to a position
+		int oldest = Math.max(undoCount - halfmoveClock, 0);
+		for (int i = undoCount - 4; i >= oldest; i -= 2) {
+			if (hashStack[i] == hash) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Saves the captured piece, the castling rights, the en passant file, the
+	 * moves since the last capture or pawn move and the key on the undo stack
+	 * before a move is made.
+	 */
+	private void pushState(int captured) {
+		if (undoCount == undoStack.length) {
+			int[] larger = new int[undoStack.length * 2];
+			System.arraycopy(undoStack, 0, larger, 0, undoCount);
+			undoStack = larger;
+			long[] largerHashes = new long[larger.length];
+			System.arraycopy(hashStack, 0, largerHashes, 0, undoCount);
+			hashStack = largerHashes;
+		}
+		hashStack[undoCount] = hash;
+		undoStack[undoCount++] = (captured + 1) | (castlingRights << 4)
+				| ((enPassantFile + 1) << 8) | (halfmoveClock << 12);
+	}
+
+	/**
+	 * Restores the castling rights, the en passant file and the moves since
+	 * the last capture or pawn move saved by pushState().
+	 * 
+	 * @return the piece code of the captured piece, EMPTY if there was none
+	 */
+	private int popState() {
+		int state = undoStack[--undoCount];
+		castlingRights = (state >>> 4) & 15;
+		enPassantFile = ((state >>> 8) & 15) - 1;
+		halfmoveClock = state >>> 12;
+		return (state & 15) - 1;
+	}
+
+	/**
+	 * Evaluates the position with the scores of Evaluation, blended by the
+	 * phase of the game, computing the pawn structure.
+	 * 
+	 * @return the score for the side to move
+	 */
+	public int evaluate() {
+		return evaluate(null);
+	}
+
+	/**
+	 * Evaluates the position with the scores of Evaluation, blended by the
+	 * phase of the game. The score of the pawn structure and the passed
+	 * pawns are taken from a table when the same pawns were evaluated before,
+	 * the passed pawns are then scored by the squares of the kings. The attack
+	 * terms are added if they are on.
+	 * 
+	 * @param pawnTable
+	 *            the pawn structures already evaluated, null for none
+	 * @return the score for the side to move
+	 */
+	public int evaluate(PawnTable pawnTable) {
+		// the terms not kept up to date, packed by Evaluation.score()
+		int terms;
+		long whitePassed;
+		long blackPassed;
+		if (pawnTable != null) {
+			int index = pawnTable.probe(this);
+			terms = pawnTable.score(index);
+			whitePassed = pawnTable.passedPawns(index, WHITE);
+			blackPassed = pawnTable.passedPawns(index, BLACK);
+		} else {
+			long white = pieces[PAWN];
+			long black = pieces[6 + PAWN];
+			whitePassed = Evaluation.passedPawns(WHITE, white, black);
+			blackPassed = Evaluation.passedPawns(BLACK, black, white);
+			terms = Evaluation.pawnStructure(white, black, whitePassed,
+					blackPassed);
+		}
+		terms += Evaluation.passedPawnKings(this, whitePassed, blackPassed);
+		if (Evaluation.isAttackTerms()) {
+			terms += Evaluation.attacks(this);
+		}
+
+		int score = Evaluation.blend(mgScore + Evaluation.mg(terms), egScore
+				+ Evaluation.eg(terms), phase);
+		return sideToMove == WHITE ? score : -score;
+	}
+
+	/**
+	 * Finds what a capture wins once all the captures on its square are
+	 * played, each side capturing with its least valuable piece and being
+	 * free to stop capturing (static exchange evaluation).
+	 * 
+	 * @param move
+	 *            the packed capture
+	 * @return the material won by the side to move, negative if it loses
+	 */
+	public int see(int move) {
+		int from = PackedMove.from(move);
+		int to = PackedMove.to(move);
+		int[] gains = seeGains;
+		int attacker = identityOf(squares[from]);
+		long occupied = allPieces ^ (1L << from);
+
+		if (PackedMove.flags(move) == PackedMove.EN_PASSANT) {
+			gains[0] = Board.pieceOwn[PAWN];
+			occupied ^= 1L << (sideToMove == WHITE ? to - 8 : to + 8);
+		} else if (squares[to] != EMPTY) {
+			gains[0] = Board.pieceOwn[identityOf(squares[to])];
+		} else {
+			gains[0] = 0;
+		}
+		if (PackedMove.isPromotion(move)) {
+			attacker = PackedMove.promotion(move);
+			gains[0] += Board.pieceOwn[attacker] - Board.pieceOwn[PAWN];
+		}
+
+		int d = 0;
+		int side = 1 - sideToMove;
+		long attackers = attackersTo(to, occupied) & occupied;
+		while (true) {
+			long own = attackers & occupancy[side];
+			if (own == 0) {
+				break;
+			}
+			// the least valuable piece captures next
+			int order = 0;
+			long bit = own & pieces[side * 6 + SEE_ORDER[0]];
+			while (bit == 0) {
+				order++;
+				bit = own & pieces[side * 6 + SEE_ORDER[order]];
+			}
+			int id = SEE_ORDER[order];
+			// the king cannot capture a defended piece
+			if (id == KING && (attackers & occupancy[1 - side]) != 0) {
+				break;
+			}
+
+			d++;
+			gains[d] = Board.pieceOwn[attacker] - gains[d - 1];
+			// neither side can gain from going on
+			if (Math.max(-gains[d - 1], gains[d]) < 0) {
+				break;
+			}
+			occupied ^= bit & -bit;
+			// pieces behind the capturing one now attack the square
+			attackers = attackersTo(to, occupied) & occupied;
+			attacker = id;
+			side = 1 - side;
+		}
+
+		while (d > 0) {
+			gains[d - 1] = -Math.max(-gains[d - 1], gains[d]);
+			d--;
+		}
+		return gains[0];
+	}
+
+	/**
+	 * Puts a piece on an empty square.
+	 * 
+	 * @param piece
+	 *            the piece code
+	 * @param sq
+	 *            the square
+	 */
+	public void addPiece(int piece, int sq) {
+		long bit = 1L << sq;
+		pieces[piece] |= bit;
+		occupancy[sideOf(piece)] |= bit;
+		allPieces |= bit;
+		squares[sq] = piece;
+		hash ^= Zobrist.PIECES[piece][sq];
+		pawnHash ^= Zobrist.PAWNS[piece][sq];
+		mgScore += Evaluation.MG[piece][sq];
+		egScore += Evaluation.EG[piece][sq];
+		phase += Evaluation.PHASE[piece];
+	}
+
+	/**
+	 * Takes a piece off its square.
+	 * 
+	 * @param piece
+	 *            the piece code
+	 * @param sq
+	 *            the square
+	 */
+	public void removePiece(int piece, int sq) {
+		long bit = 1L << sq;
+		pieces[piece] &= ~bit;
+		occupancy[sideOf(piece)] &= ~bit;
+		allPieces &= ~bit;
+		squares[sq] = EMPTY;
+		hash ^= Zobrist.PIECES[piece][sq];
+		pawnHash ^= Zobrist.PAWNS[piece][sq];
+		mgScore -= Evaluation.MG[piece][sq];
+		egScore -= Evaluation.EG[piece][sq];
+		phase -= Evaluation.PHASE[piece];
+	}
+
+	/**
+	 * Moves a piece from one square to an empty square.
+	 * 
+	 * @param piece
+	 *            the piece code
+	 * @param from
+	 *            the square the piece leaves
+	 * @param to
+	 *            the square the piece goes to
+	 */
+	public void movePiece(int piece, int from, int to) {
+		long bits = (1L << from) | (1L << to);
+		pieces[piece] ^= bits;
+		occupancy[sideOf(piece)] ^= bits;
+		allPieces ^= bits;
+		squares[from] = EMPTY;
+		squares[to] = piece;
+		hash ^= Zobrist.PIECES[piece][from] ^ Zobrist.PIECES[piece][to];
+		pawnHash ^= Zobrist.PAWNS[piece][from] ^ Zobrist.PAWNS[piece][to];
+		mgScore += Evaluation.MG[piece][to] - Evaluation.MG[piece][from];
+		egScore += Evaluation.EG[piece][to] - Evaluation.EG[piece][from];
+	}
+
+	/**
+	 * Returns the square of the king of a side.
+	 * 
+	 * @param side
+	 *            WHITE or BLACK
+	 * @return the square of the king
+	 */
+	public int kingSquare(int side) {
+		return Long.numberOfTrailingZeros(pieces[side * 6 + KING]);
+	}
+
+	/**
+	 * Returns all the pieces of both sides that attack a square.
+	 * 
+	 * @param sq
+	 *            the square
+	 * @param occupied
+	 *            the occupied squares used to block the sliders
+	 * @return the attacking pieces
+	 */
+	public long attackersTo(int sq, long occupied) {
+		long rooksQueens = pieces[ROOK] | pieces[QUEEN] | pieces[6 + ROOK]
+				| pieces[6 + QUEEN];
+		long bishopsQueens = pieces[BISHOP] | pieces[QUEEN]
+				| pieces[6 + BISHOP] | pieces[6 + QUEEN];
+
+		// a white pawn attacks the square if a black pawn on the square
+		// would attack the white pawn, and the other way around
+		return (Attacks.pawn(BLACK, sq) & pieces[PAWN])
+				| (Attacks.pawn(WHITE, sq) & pieces[6 + PAWN])
+				| (Attacks.knight(sq) & (pieces[KNIGHT] | pieces[6 + KNIGHT]))
+				| (Attacks.king(sq) & (pieces[KING] | pieces[6 + KING]))
+				| (Attacks.bishop(sq, occupied) & bishopsQueens)
+				| (Attacks.rook(sq, occupied) & rooksQueens);
+	}
+
+	/**
+	 * Finds the squares attacked by the piece on a square.
+	 * 
+	 * @param sq
+	 *            the square of the piece
+	 * @return the squares attacked, none if the square is empty
+	 */
+	public long attacksFrom(int sq) {
+		int code = squares[sq];
+		if (code == EMPTY) {
+			return 0;
+		}
+		switch (identityOf(code)) {
+		case PAWN:
+			return Attacks.pawn(code / 6, sq);
+		case BISHOP:
+			return Attacks.bishop(sq, allPieces);
+		case KNIGHT:
+			return Attacks.knight(sq);
+		case ROOK:
+			return Attacks.rook(sq, allPieces);
+		case QUEEN:
+			return Attacks.queen(sq, allPieces);
+		default:
+			return Attacks.king(sq);
+		}
+	}
+
+	/**
+	 * Determines if a square is attacked by any piece of a side.
+	 * 
+	 * @param sq
+	 *            the square
+	 * @param bySide
+	 *            the attacking side
+	 * @return true if at least one piece of the side attacks the square
+	 */
+	public boolean isAttacked(int sq, int bySide) {
+		int base = bySide * 6;
+		if ((Attacks.pawn(1 - bySide, sq) & pieces[base + PAWN]) != 0
+				|| (Attacks.knight(sq) & pieces[base + KNIGHT]) != 0
+				|| (Attacks.king(sq) & pieces[base + KING]) != 0) {
+			return true;
+		}
+		long queens = pieces[base + QUEEN];
+		return (Attacks.bishop(sq, allPieces) & (pieces[base + BISHOP] | queens)) != 0
+				|| (Attacks.rook(sq, allPieces) & (pieces[base + ROOK] | queens)) != 0;
+	}
+
+	/**
+	 * Determines if the king of a side is in check.
+	 * 
+	 * @param side
+	 *            WHITE or BLACK
+	 * @return true if the king is attacked
+	 */
+	public boolean inCheck(int side) {
+		return isAttacked(kingSquare(side), 1 - side);
+	}
+
+	/**
+	 * Returns the square index of a board coordinate.
+	 * 
+	 * @param row
+	 *            the row of the Board object (a to h)
+	 * @param col
+	 *            the column of the Board object (1 to 8)
+	 * @return the square index
+	 */
+	public static int square(int row, int col) {
+		return col * 8 + row;
+	}
+
+	/**
+	 * Returns the piece code of a piece.
+	 * 
+	 * @param identity
+	 *            the identity number of the piece
+	 * @param color
+	 *            the color of the piece
+	 * @return the piece code
+	 */
+	public static int pieceCode(int identity, boolean color) {
+		return color ? identity : 6 + identity;
+	}
+
+	/**
+	 * Returns the identity number of a piece code.
+	 */
+	public static int identityOf(int piece) {
+		return piece < 6 ? piece : piece - 6;
+	}
+
+	/**
+	 * Returns the side (WHITE or BLACK) of a piece code.
+	 */
+	public static int sideOf(int piece) {
+		return piece < 6 ? WHITE : BLACK;
+	}
+
+	/**
+	 * Converts the position to a string for debugging purposes in the same
+	 * layout as Board.toString().
+	 */
+	public String toString() {
+		final String letters = "PBNRQKpbnrqk";
+		StringBuffer printBoard = new StringBuffer();
+
+		for (int col = 7; col >= 0; col--) {
+			for (int row = 0; row < 8; row++) {
+				int piece = squares[square(row, col)];
+				if (piece != EMPTY) {
+					printBoard.append(letters.charAt(piece) + " ");
+				} else {
+					printBoard.append(0 + " ");
+				}
+			}
+			printBoard.append("\n");
+		}
+
+		return printBoard.toString();
+	}
+
+}
@@ -1,9 +1,7 @@
 import java.awt.Point;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 import javax.swing.DefaultListModel;
-import javax.swing.ImageIcon;
 import javax.swing.JOptionPane;
 
 public class Board {
@@ -11,9 +9,8 @@ public class Board {
 	public Piece[][] board;
 	private int size;
 
-	// used for board evaluation
+	// the values of the pieces, used to order and resolve captures
 	static int[] pieceOwn = new int[] { 100, 300, 300, 500, 1000, 9999 };
-	static int[] pieceThreats = new int[] { 0, -4, -8, -12, -20, -16 };
 
 	private final boolean BLACK = false;
 	private final boolean WHITE = true;
@@ -30,11 +27,31 @@ public class Board {
 	protected King whiteKing;
 	protected King blackKing;
 
+	// the pieces putting the king of the current player in check
+	protected Piece[] threatsToKing = new Piece[2];
+
 	protected boolean currentPlayer;
 
 	public boolean blackIsInCheck;
 	public boolean whiteIsInCheck;
 
+	// the moves since the last capture or pawn move, and the number of the
+	// move being played, which goes up after each move of black
+	protected int halfmoveClock;
+	protected int fullmoveNumber;
+
+	// the Zobrist key of the position, and the part of it that comes from the
+	// castling rights and the en passant file
+	private long hash;
+	private long stateHash;
+
+	// the squares the pieces of one color can legally move to, by the square
+	// of the piece, found once for each position and kept until the board
+	// changes
+	private long[] legalTargets = new long[64];
+	private boolean legalTargetsColor;
+	private boolean legalTargetsValid;
+
 	/**
 	 * Creates a new board for the start of a game.
 	 */
@@ -46,7 +63,6 @@ public class Board {
 		whiteIsInCheck = false;
 		history = new DefaultListModel();
 		newGame();
-		// Piece.updateBoard(this);
 	}
 
 	/**
@@ -59,13 +75,15 @@ public class Board {
 		blackIsInCheck = false;
 		whiteIsInCheck = false;
 		currentPlayer = player;
+		halfmoveClock = other.halfmoveClock;
+		fullmoveNumber = other.fullmoveNumber;
 		history = new DefaultListModel();
 
 		for (int i = 0; i < 8; i++) {
 			for (int j = 0; j < 8; j++) {
 				if (other.getPiece(i, j) != null) {
 					Piece placement = other.getPiece(i, j).getCopyOf();
-					board[i][j] = placement;
+					setBoard(i, j, placement);
 					if (placement.identity == KING) {
 
 						if (placement.color == WHITE) {
@@ -80,7 +98,7 @@ public class Board {
 		}
 
 		updateThreats();
-		
+		resetHash();
 	}
 
 	/**
@@ -89,6 +107,8 @@ public class Board {
 	public void newGame() {
 
 		currentPlayer = WHITE;
+		halfmoveClock = 0;
+		fullmoveNumber = 1;
 		board[0][0] = new Rook(WHITE, 0, 0);
 		board[7][0] = new Rook(WHITE, 7, 0);
 		board[1][0] = new Knight(WHITE, 1, 0);
@@ -121,8 +141,60 @@ public class Board {
 			}
 		}
 
-		whiteKing.initializeThreats();
+		// let the pieces know which board they are on
+		for (int i = 0; i < 8; i++) {
+			for (int j = 0; j < 8; j++) {
+				if (board[i][j] != null) {
+					board[i][j].myBoard = this;
+				}
+			}
+		}
+
+		clearThreats();
 		history.clear();
+		resetHash();
+	}
+
+	/**
+	 * Creates a board from a position in Forsyth-Edwards Notation, such as
+	 * "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1". Kings and
+	 * rooks without castling rights are marked as moved, and the pawns next
+	 * to the en passant square are allowed to capture en passant. The move
+	 * counters may be left out.
+	 * 
+	 * @param fen
+	 *            the position in Forsyth-Edwards Notation
+	 * @return the new board
+	 * @throws IllegalArgumentException
+	 *             if the string is not a valid position
+	 */
+	public static Board fromFen(String fen) {
+		Board b = new BitBoard(fen).toBoard();
+
+		String[] fields = fen.trim().split("\\s+");
+		try {
+			if (fields.length > 4) {
+				b.halfmoveClock = Integer.parseInt(fields[4]);
+			}
+			if (fields.length > 5) {
+				b.fullmoveNumber = Integer.parseInt(fields[5]);
+			}
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Bad FEN move counters: " + fen);
+		}
+		return b;
+	}
+
+	/**
+	 * Writes the position in Forsyth-Edwards Notation. The castling rights
+	 * come from the kings and rooks that have not moved, and the en passant
+	 * square from the pawns allowed to capture en passant.
+	 * 
+	 * @return the position in Forsyth-Edwards Notation
+	 */
+	public String toFen() {
+		return new BitBoard(this).toFen() + " " + halfmoveClock + " "
+				+ fullmoveNumber;
 	}
 
 	/**
@@ -155,6 +227,9 @@ public class Board {
 	 */
 	public void switchPlayer() {
 		currentPlayer = !currentPlayer;
+		hash ^= Zobrist.SIDE;
+		// the castling and en passant flags of the pieces may have changed
+		legalTargetsValid = false;
 	}
 
 	/**
@@ -183,10 +258,17 @@ public class Board {
 
 	public void setBoard(int x, int y, Piece chessPiece) {
 
+		// update the key for the piece removed and the piece added
+		if (board[x][y] != null) {
+			hash ^= pieceHash(board[x][y], x, y);
+		}
 		board[x][y] = chessPiece;
 		if (chessPiece != null) {
 			chessPiece.setCoordinates(x, y);
+			chessPiece.myBoard = this;
+			hash ^= pieceHash(chessPiece, x, y);
 		}
+		legalTargetsValid = false;
 
 	}
 
@@ -204,6 +286,7 @@ public class Board {
 		removeEnPassants();
 
 		Piece movedPiece = m.movedPiece;
+		movedPiece.myBoard = this;
 		// set original position to null
 		setBoard(m.startRow, m.startCol, null);
 
@@ -245,109 +328,29 @@ public class Board {
 		setBoard(m.endRow, m.endCol, movedPiece);
 		// add to history
 		history.addElement(m);
+		countMove(m);
 
 		switchPlayer();
-		// update to Piece class
-		Piece.updateBoard(this);
 		updateThreats();
+		updateStateHash();
 		return this;
 	}
 
 	/**
-	 * Returns a list of all possible moves for one player. This method is used
-	 * for AO to generate all moves.
-	 * 
-	 * @param aiColor
-	 *            the color of the AI
-	 * @return a list of move objects
+	 * Updates the move counters for a move just added to the history, keeping
+	 * the old halfmove clock in the move so that it can be undone.
 	 */
-	public List<Move> generateMoves(boolean aiColor) {
-
-		List<Move> allPossibleMoves = new ArrayList<Move>();
-		// go through the board and generate all possible moves
-		if (aiColor) {
-			for (Piece[] newRow : board) {
-				for (Piece nextPiece : newRow) {
-					if (nextPiece != null && nextPiece.color == WHITE) {
-						allPossibleMoves.addAll(nextPiece.generateMoves());
-					}
-				}
-			}
+	private void countMove(Move m) {
+		m.halfmoveClock = halfmoveClock;
+		if (m.movedPiece.identity == PAWN || m.promoted
+				|| m.capturedPiece != null) {
+			halfmoveClock = 0;
 		} else {
-			for (Piece[] newRow : board) {
-				for (Piece nextPiece : newRow) {
-					if (nextPiece != null && nextPiece.color == BLACK) {
-						allPossibleMoves.addAll(nextPiece.generateMoves());
-					}
-				}
-			}
+			halfmoveClock++;
 		}
-		return allPossibleMoves;
-	}
-
-	/**
-	 * Evaluates the current Board positions
-	 * 
-	 * @param AIColor
-	 *            true if the AI is white and false if it's black
-	 * @param isEven
-	 *            true if the last ply searched is the AI's move and false if
-	 *            not
-	 * @return the evaluation for the Board
-	 */
-
-	public double evaluate(boolean AIColor, boolean isEven) {
-		double score = 0;
-		int[] pieceCounts = new int[6];
-		int[] threatsCounts = new int[6];
-		// int[] mobilityCounts = new int[6];
-		// Iterates through the Board
-		for (Piece[] newRow : board) {
-			for (Piece nextPiece : newRow) {
-				if (nextPiece != null) {
-					int ID = nextPiece.identity;
-					if (AIColor == nextPiece.color) {
-						// Counts the pieces
-						pieceCounts[ID]++;
-						// Counts the mobility
-						// mobilityCounts[ID] +=
-						// nextPiece.generateMoves().size();
-						// Counts the threats
-						if (nextPiece.isPositionUnderThreat()) {
-							threatsCounts[ID]++;
-						}
-					} else {
-						// Counts the pieces
-						pieceCounts[ID]--;
-						// Counts the mobility
-						// mobilityCounts[ID] -=
-						// nextPiece.generateMoves().size();
-						// Counts the threats
-						if (nextPiece.isPositionUnderThreat()) {
-							threatsCounts[ID]--;
-						}
-					}
-				}
-			}
-		}
-		// If number of plies is even,
-		if (isEven) {
-			for (int loopCount = 0; loopCount < 6; loopCount++) {
-				score += pieceCounts[loopCount] * pieceOwn[loopCount];
-				// score += mobilityCounts[loopCount] *
-				// pieceMobility[loopCount];
-				score += threatsCounts[loopCount] * pieceThreats[loopCount];
-			}
-			// If its odd, counts threats as potential losses of pieces
-		} else {
-			for (int loopCount = 0; loopCount < 6; loopCount++) {
-				score += pieceCounts[loopCount] * pieceOwn[loopCount];
-				// score += mobilityCounts[loopCount] *
-				// pieceMobility[loopCount];
-				score -= threatsCounts[loopCount] * pieceOwn[loopCount];
-			}
+		if (m.movedPiece.color == BLACK) {
+			fullmoveNumber++;
 		}
-		return score;
 	}
 
 	/**
@@ -421,9 +424,16 @@ public class Board {
 
 			}
 
+			// set the move counters back
+			halfmoveClock = previousMove.halfmoveClock;
+			if (movedPiece.color == BLACK) {
+				fullmoveNumber--;
+			}
+
 			switchPlayer();
 			// update threats to Piece class
 			updateThreats();
+			updateStateHash();
 		} else {
 			JOptionPane
 					.showMessageDialog(null,
@@ -444,17 +454,10 @@ public class Board {
 	public int selectPromotion(boolean colorOfPiece) {
 		Object[] option = new Object[4];
 		// Displays the pictures of piece choices.
-		if (colorOfPiece == WHITE) {
-			option[0] = new ImageIcon("image\\queenw.gif");
-			option[1] = new ImageIcon("image\\rookw.gif");
-			option[2] = new ImageIcon("image\\bishopw.gif");
-			option[3] = new ImageIcon("image\\knightw.gif");
-		} else {
-			option[0] = new ImageIcon("image\\queenb.gif");
-			option[1] = new ImageIcon("image\\rookb.gif");
-			option[2] = new ImageIcon("image\\bishopb.gif");
-			option[3] = new ImageIcon("image\\knightb.gif");
-		}
+		option[0] = PieceSprites.getIcon(QUEEN, colorOfPiece);
+		option[1] = PieceSprites.getIcon(ROOK, colorOfPiece);
+		option[2] = PieceSprites.getIcon(BISHOP, colorOfPiece);
+		option[3] = PieceSprites.getIcon(KNIGHT, colorOfPiece);
 		int choice = JOptionPane.showOptionDialog(null, "Promote pawn to:", "",
 				JOptionPane.YES_NO_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE,
 				null, option, option[0]);
@@ -580,29 +583,79 @@ public class Board {
 			selectedPiece.hasMoved = true;
 		}
 
+		countMove((Move) history.lastElement());
+
 		// Switch turn
 		switchPlayer();
 
-		// update to Piece class
+		// update the threats to the king
 		updateThreats();
-		Piece.updateBoard(this);
+		updateStateHash();
 
 	}
 
 	/**
-	 * Update the threats of current board to the Piece class.
+	 * Returns the Zobrist key of the position. It is kept up to date by
+	 * makeMove(), undoMove() and moveTo().
+	 * 
+	 * @return the 64 bit key, the same as the one of new BitBoard(this)
+	 */
+	public long hash() {
+		return hash;
+	}
+
+	/**
+	 * Returns the key of a piece on a square.
+	 */
+	private long pieceHash(Piece p, int x, int y) {
+		return Zobrist.PIECES[BitBoard.pieceCode(p.identity, p.color)][BitBoard
+				.square(x, y)];
+	}
+
+	/**
+	 * Replaces the part of the key that comes from the castling rights and the
+	 * en passant file, after the pieces have changed.
+	 */
+	private void updateStateHash() {
+		hash ^= stateHash;
+		stateHash = Zobrist.state(BitBoard.castlingRightsOf(this),
+				BitBoard.enPassantFileOf(this));
+		hash ^= stateHash;
+	}
+
+	/**
+	 * Computes the key of the position from scratch.
+	 */
+	protected void resetHash() {
+		hash = 0;
+		for (int i = 0; i < 8; i++) {
+			for (int j = 0; j < 8; j++) {
+				if (board[i][j] != null) {
+					hash ^= pieceHash(board[i][j], i, j);
+				}
+			}
+		}
+		if (currentPlayer == BLACK) {
+			hash ^= Zobrist.SIDE;
+		}
+		stateHash = 0;
+		updateStateHash();
+	}
+
+	/**
+	 * Update the threats to the king of the current player.
 	 */
 	public void updateThreats() {
 
 		if (currentPlayer == WHITE) {
 			if (whiteKing == null) {
-				Piece.threatsToKing = new Piece[2];
+				clearThreats();
 			} else {
 				whiteIsInCheck = whiteKing.isPositionUnderThreat();
 			}
 		} else {
 			if (blackKing == null) {
-				Piece.threatsToKing = new Piece[2];
+				clearThreats();
 			} else {
 				blackIsInCheck = blackKing.isPositionUnderThreat();
 			}
@@ -610,6 +663,14 @@ public class Board {
 		}
 	}
 
+	/**
+	 * Removes all the threats to the king, before they are searched again.
+	 */
+	protected void clearThreats() {
+		threatsToKing[0] = null;
+		threatsToKing[1] = null;
+	}
+
 	/**
 	 * Converts a board to a string for debugging purposes. Empty spaces have a
 	 * 0, spaces with a piece have their first letter listed (knight is 'k',
@@ -695,21 +756,50 @@ public class Board {
 	 *         no moves are found.
 	 */
 	private boolean noPossibleMoves(boolean color) {
-
-		// Search through the board and determines if there is a single move or
-		// not.
-		for (int checkRow = 0; checkRow < 8; checkRow++) {
-			for (int checkCol = 0; checkCol < 8; checkCol++) {
-				Piece currentPiece = board[checkRow][checkCol];
-				if (currentPiece != null && currentPiece.color == color
-						&& !currentPiece.generateValidMoves().isEmpty()) {
-					return false;
-				}
+		findLegalTargets(color);
+		for (int sq = 0; sq < 64; sq++) {
+			if (legalTargets[sq] != 0) {
+				return false;
 			}
 		}
 		return true;
 	}
 
+	/**
+	 * Finds the squares a piece can legally move to.
+	 * 
+	 * @param p
+	 *            the piece on this board
+	 * @return the squares, as a bitboard
+	 */
+	public long legalTargets(Piece p) {
+		findLegalTargets(p.color);
+		return legalTargets[BitBoard.square(p.row, p.col)];
+	}
+
+	/**
+	 * Generates the legal moves of a color in one pass by BitBoard, which
+	 * accounts for checks and pins, and keeps their squares by the square of
+	 * the piece moved. Nothing is done if they are known for the position.
+	 */
+	private void findLegalTargets(boolean color) {
+		if (legalTargetsValid && legalTargetsColor == color) {
+			return;
+		}
+		BitBoard position = new BitBoard(this);
+		position.setSideToMove(color ? BitBoard.WHITE : BitBoard.BLACK);
+		int[] moves = new int[AI.MAX_MOVES];
+		int count = position.generateMoves(moves, 0);
+
+		Arrays.fill(legalTargets, 0);
+		for (int i = 0; i < count; i++) {
+			legalTargets[PackedMove.from(moves[i])] |= 1L << PackedMove
+					.to(moves[i]);
+		}
+		legalTargetsColor = color;
+		legalTargetsValid = true;
+	}
+
 	/**
 	 * Return the move history of the board
 	 * 
@@ -0,0 +1,68 @@
+/**
+ * A table of the scores of positions already evaluated, indexed by their
+ * Zobrist key, so that a position reached again through another order of
+ * moves or by a re-search is not evaluated again. Each entry is one long: the
+ * upper half of the key and the score. A long is written at once, so the
+ * threads share the table without locks and never read the key of one entry
+ * with the score of another.
+ */
+public class EvalCache {
+
+	// returned by probe() when the position is not in the table
+	public static final int MISS = Integer.MIN_VALUE;
+
+	private static final long KEY_BITS = 0xFFFFFFFF00000000L;
+
+	private long[] entries;
+	private int mask;
+
+	/**
+	 * Creates an empty table.
+	 * 
+	 * @param kilobytes
+	 *            the size of the table, rounded down to a power of two of
+	 *            entries
+	 */
+	public EvalCache(int kilobytes) {
+		int size = Integer.highestOneBit((int) Math.max(
+				Math.min(kilobytes * 1024L / 8, 1 << 26), 1));
+		entries = new long[size];
+		mask = size - 1;
+	}
+
+	/**
+	 * Looks up the score of a position. The lower bits of the key give the
+	 * entry and the upper half is checked against it.
+	 * 
+	 * @param key
+	 *            the Zobrist key of the position
+	 * @return the score for the side to move, MISS if it is not in the table
+	 */
+	public int probe(long key) {
+		long entry = entries[(int) key & mask];
+		if ((entry & KEY_BITS) != (key & KEY_BITS)) {
+			return MISS;
+		}
+		return (int) entry;
+	}
+
+	/**
+	 * Stores the score of a position, replacing the one in its entry.
+	 * 
+	 * @param key
+	 *            the Zobrist key of the position
+	 * @param score
+	 *            the score for the side to move
+	 */
+	public void store(long key, int score) {
+		entries[(int) key & mask] = (key & KEY_BITS) | (score & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Removes all the entries, after the evaluation has changed.
+	 */
+	public void clear() {
+		java.util.Arrays.fill(entries, 0);
+	}
+
+}
@@ -0,0 +1,679 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+/**
+ * The values of the pieces on each square, for the middle game and for the
+ * endgame. BitBoard adds up both scores as pieces are put on and taken off
+ * the squares, and blends them by the material left on the board (the phase
+ * of the game), so evaluating a position takes a few operations instead of a
+ * look at every square.
+ */
+public final class Evaluation {
+
+	// the phase of a board with all the pieces, each piece counts by its
+	// identity, pawns and kings do not count
+	public static final int MAX_PHASE = 24;
+	private static final int[] PHASE_WEIGHTS = { 0, 1, 1, 2, 4, 0 };
+
+	// the value of each identity, in the middle game and in the endgame
+	static final int[] MG_VALUES = { 82, 365, 337, 477, 1025, 0 };
+	static final int[] EG_VALUES = { 94, 297, 281, 512, 936, 0 };
+
+	// the bonus of each identity on each square for white, from a8 to h8 and
+	// down to a1 to h1 so that the tables look like the board, in the middle
+	// game and in the endgame
+	static final int[][] MG_TABLES = {
+			// pawn
+			{ 0, 0, 0, 0, 0, 0, 0, 0,
+			98, 134, 61, 95, 68, 126, 34, -11,
+			-6, 7, 26, 31, 65, 56, 25, -20,
+			-14, 13, 6, 21, 23, 12, 17, -23,
+			-27, -2, -5, 12, 17, 6, 10, -25,
+			-26, -4, -4, -10, 3, 3, 33, -12,
+			-35, -1, -20, -23, -15, 24, 38, -22,
+			0, 0, 0, 0, 0, 0, 0, 0 },
+			// bishop
+			{ -29, 4, -82, -37, -25, -42, 7, -8,
+			-26, 16, -18, -13, 30, 59, 18, -47,
+			-16, 37, 43, 40, 35, 50, 37, -2,
+			-4, 5, 19, 50, 37, 37, 7, -2,
+			-6, 13, 13, 26, 34, 12, 10, 4,
+			0, 15, 15, 15, 14, 27, 18, 10,
+			4, 15, 16, 0, 7, 21, 33, 1,
+			-33, -3, -14, -21, -13, -12, -39, -21 },
+			// knight
+			{ -167, -89, -34, -49, 61, -97, -15, -107,
+			-73, -41, 72, 36, 23, 62, 7, -17,
+			-47, 60, 37, 65, 84, 129, 73, 44,
+			-9, 17, 19, 53, 37, 69, 18, 22,
+			-13, 4, 16, 13, 28, 19, 21, -8,
+			-23, -9, 12, 10, 19, 17, 25, -16,
+			-29, -53, -12, -3, -1, 18, -14, -19,
+			-105, -21, -58, -33, -17, -28, -19, -23 },
+			// rook
+			{ 32, 42, 32, 51, 63, 9, 31, 43,
+			27, 32, 58, 62, 80, 67, 26, 44,
+			-5, 19, 26, 36, 17, 45, 61, 16,
+			-24, -11, 7, 26, 24, 35, -8, -20,
+			-36, -26, -12, -1, 9, -7, 6, -23,
+			-45, -25, -16, -17, 3, 0, -5, -33,
+			-44, -16, -20, -9, -1, 11, -6, -71,
+			-19, -13, 1, 17, 16, 7, -37, -26 },
+			// queen
+			{ -28, 0, 29, 12, 59, 44, 43, 45,
+			-24, -39, -5, 1, -16, 57, 28, 54,
+			-13, -17, 7, 8, 29, 56, 47, 57,
+			-27, -27, -16, -16, -1, 17, -2, 1,
+			-9, -26, -9, -10, -2, -4, 3, -3,
+			-14, 2, -11, -2, -5, 2, 14, 5,
+			-35, -8, 11, 2, 8, 15, -3, 1,
+			-1, -18, -9, 10, -15, -25, -31, -50 },
+			// king
+			{ -65, 23, 16, -15, -56, -34, 2, 13,
+			29, -1, -20, -7, -8, -4, -38, -29,
+			-9, 24, 2, -16, -20, 6, 22, -22,
+			-17, -20, -12, -27, -30, -25, -14, -36,
+			-49, -1, -27, -39, -46, -44, -33, -51,
+			-14, -14, -22, -46, -44, -30, -15, -27,
+			1, 7, -8, -64, -43, -16, 9, 8,
+			-15, 36, 12, -54, 8, -28, 24, 14 } };
+
+	static final int[][] EG_TABLES = {
+			// pawn
+			{ 0, 0, 0, 0, 0, 0, 0, 0,
+			178, 173, 158, 134, 147, 132, 165, 187,
+			94, 100, 85, 67, 56, 53, 82, 84,
+			32, 24, 13, 5, -2, 4, 17, 17,
+			13, 9, -3, -7, -7, -8, 3, -1,
+			4, 7, -6, 1, 0, -5, -1, -8,
+			13, 8, 8, 10, 13, 0, 2, -7,
+			0, 0, 0, 0, 0, 0, 0, 0 },
+			// bishop
+			{ -14, -21, -11, -8, -7, -9, -17, -24,
+			-8, -4, 7, -12, -3, -13, -4, -14,
+			2, -8, 0, -1, -2, 6, 0, 4,
+			-3, 9, 12, 9, 14, 10, 3, 2,
+			-6, 3, 13, 19, 7, 10, -3, -9,
+			-12, -3, 8, 10, 13, 3, -7, -15,
+			-14, -18, -7, -1, 4, -9, -15, -27,
+			-23, -9, -23, -5, -9, -16, -5, -17 },
+			// knight
+			{ -58, -38, -13, -28, -31, -27, -63, -99,
+			-25, -8, -25, -2, -9, -25, -24, -52,
+			-24, -20, 10, 9, -1, -9, -19, -41,
+			-17, 3, 22, 22, 22, 11, 8, -18,
+			-18, -6, 16, 25, 16, 17, 4, -18,
+			-23, -3, -1, 15, 10, -3, -20, -22,
+			-42, -20, -10, -5, -2, -20, -23, -44,
+			-29, -51, -23, -15, -22, -18, -50, -64 },
+			// rook
+			{ 13, 10, 18, 15, 12, 12, 8, 5,
+			11, 13, 13, 11, -3, 3, 8, 3,
+			7, 7, 7, 5, 4, -3, -5, -3,
+			4, 3, 13, 1, 2, 1, -1, 2,
+			3, 5, 8, 4, -5, -6, -8, -11,
+			-4, 0, -5, -1, -7, -12, -8, -16,
+			-6, -6, 0, 2, -9, -9, -11, -3,
+			-9, 2, 3, -1, -5, -13, 4, -20 },
+			// queen
+			{ -9, 22, 22, 27, 27, 19, 10, 20,
+			-17, 20, 32, 41, 58, 25, 30, 0,
+			-20, 6, 9, 49, 47, 35, 19, 9,
+			3, 22, 24, 45, 57, 40, 57, 36,
+			-18, 28, 19, 47, 31, 34, 39, 23,
+			-16, -27, 15, 6, 9, 17, 10, 5,
+			-22, -23, -30, -16, -16, -23, -36, -32,
+			-33, -28, -22, -43, -5, -32, -20, -41 },
+			// king
+			{ -74, -35, -18, -18, -11, 15, 4, -17,
+			-12, 17, 14, 17, 17, 38, 23, 11,
+			10, 17, 23, 15, 20, 45, 44, 13,
+			-8, 22, 24, 27, 26, 33, 26, 3,
+			-18, -4, 21, 24, 27, 23, 9, -11,
+			-19, -3, 11, 21, 23, 16, 7, -9,
+			-27, -11, 4, 13, 14, 4, -5, -17,
+			-53, -34, -21, -11, -28, -14, -24, -43 } };
+
+	// the penalties of a doubled, an isolated and a backward pawn, in the
+	// middle game and in the endgame
+	static final int[] DOUBLED_PAWN = { -10, -25 };
+	static final int[] ISOLATED_PAWN = { -10, -15 };
+	static final int[] BACKWARD_PAWN = { -8, -10 };
+	// the bonus of a passed pawn by the ranks it has gone forward, in the
+	// middle game and in the endgame
+	static final int[] MG_PASSED_PAWN = { 0, 0, 5, 10, 20, 35, 55, 0 };
+	static final int[] EG_PASSED_PAWN = { 0, 10, 15, 25, 45, 70, 110, 0 };
+	// the endgame bonus of a passed pawn for each square between the square
+	// in front of it and its own king, then the enemy king, multiplied by the
+	// ranks it has gone forward past the third
+	static final int[] PASSED_PAWN_KING = { -2, 4 };
+
+	// the bonus of each identity for each square it attacks that holds no
+	// own piece and no enemy pawn attacks, counted from an average number of
+	// such squares, in the middle game and in the endgame
+	static final int[] MOBILITY_AVERAGE = { 0, 7, 4, 7, 14, 0 };
+	static final int[] MG_MOBILITY = { 0, 5, 4, 2, 1, 0 };
+	static final int[] EG_MOBILITY = { 0, 5, 4, 4, 2, 0 };
+	// the weight of each identity attacking a square next to the enemy king,
+	// and the middle game bonus by the total weight of the attacks once two
+	// pieces take part
+	static final int[] KING_ATTACK_WEIGHTS = { 0, 2, 2, 3, 5, 0 };
+	static final int[] KING_DANGER = { 0, 0, 2, 5, 9, 14, 20, 27, 35, 44,
+			54, 65, 77, 90, 104, 119, 135, 152, 170, 189, 209, 230, 252, 275 };
+	// the penalty of each piece attacked by the enemy and not defended, in
+	// the middle game and in the endgame
+	static final int[] HANGING_PIECE = { -15, -10 };
+
+	// set if the attack terms are evaluated
+	private static boolean attackTerms = true;
+
+	// the arrays of values that can be tuned, and the names they are saved
+	// and loaded with
+	private static final String[] PARAMETER_NAMES = { "MG_VALUES",
+			"EG_VALUES", "MG_PAWN_TABLE", "MG_BISHOP_TABLE", "MG_KNIGHT_TABLE",
+			"MG_ROOK_TABLE", "MG_QUEEN_TABLE", "MG_KING_TABLE",
+			"EG_PAWN_TABLE", "EG_BISHOP_TABLE", "EG_KNIGHT_TABLE",
+			"EG_ROOK_TABLE", "EG_QUEEN_TABLE", "EG_KING_TABLE",
+			"DOUBLED_PAWN", "ISOLATED_PAWN", "BACKWARD_PAWN",
+			"MG_PASSED_PAWN", "EG_PASSED_PAWN", "PASSED_PAWN_KING",
+			"MOBILITY_AVERAGE", "MG_MOBILITY", "EG_MOBILITY",
+			"KING_ATTACK_WEIGHTS", "KING_DANGER", "HANGING_PIECE" };
+	private static final int[][] PARAMETERS = { MG_VALUES, EG_VALUES,
+			MG_TABLES[0], MG_TABLES[1], MG_TABLES[2], MG_TABLES[3],
+			MG_TABLES[4], MG_TABLES[5], EG_TABLES[0], EG_TABLES[1],
+			EG_TABLES[2], EG_TABLES[3], EG_TABLES[4], EG_TABLES[5],
+			DOUBLED_PAWN, ISOLATED_PAWN, BACKWARD_PAWN, MG_PASSED_PAWN,
+			EG_PASSED_PAWN, PASSED_PAWN_KING, MOBILITY_AVERAGE, MG_MOBILITY,
+			EG_MOBILITY, KING_ATTACK_WEIGHTS, KING_DANGER, HANGING_PIECE };
+
+	// the squares of each file, and of the files on both sides of it
+	private static final long[] FILES = new long[8];
+	private static final long[] ADJACENT_FILES = new long[8];
+	// by [side][square]: the squares in front of a pawn on its file, the
+	// squares in front of it on its file and the files next to it, which no
+	// enemy pawn must hold for it to be passed, and the squares of the files
+	// next to it on its rank and behind, where a pawn could defend it
+	private static final long[][] FORWARD = new long[2][64];
+	private static final long[][] PASSED_SPANS = new long[2][64];
+	private static final long[][] SUPPORTS = new long[2][64];
+
+	// the value and bonus together by [piece code][square], as in BitBoard,
+	// negative for black so that the scores are from the side of white
+	public static final int[][] MG = new int[12][64];
+	public static final int[][] EG = new int[12][64];
+	// the phase of each piece code
+	public static final int[] PHASE = new int[12];
+
+	static {
+		update();
+
+		for (int file = 0; file < 8; file++) {
+			FILES[file] = 0x0101010101010101L << file;
+		}
+		for (int file = 0; file < 8; file++) {
+			ADJACENT_FILES[file] = (file > 0 ? FILES[file - 1] : 0)
+					| (file < 7 ? FILES[file + 1] : 0);
+		}
+		for (int sq = 0; sq < 64; sq++) {
+			int file = sq & 7;
+			int rank = sq >>> 3;
+			for (int r = 0; r < 8; r++) {
+				long rankBits = 0xFFL << (r * 8);
+				if (r > rank) {
+					FORWARD[BitBoard.WHITE][sq] |= rankBits & FILES[file];
+					PASSED_SPANS[BitBoard.WHITE][sq] |= rankBits
+							& (FILES[file] | ADJACENT_FILES[file]);
+				} else {
+					SUPPORTS[BitBoard.WHITE][sq] |= rankBits
+							& ADJACENT_FILES[file];
+				}
+				if (r < rank) {
+					FORWARD[BitBoard.BLACK][sq] |= rankBits & FILES[file];
+					PASSED_SPANS[BitBoard.BLACK][sq] |= rankBits
+							& (FILES[file] | ADJACENT_FILES[file]);
+				} else {
+					SUPPORTS[BitBoard.BLACK][sq] |= rankBits
+							& ADJACENT_FILES[file];
+				}
+			}
+		}
+	}
+
+	private Evaluation() {
+	}
+
+	/**
+	 * Computes the scores by piece code and square from the values and the
+	 * tables, after they are changed. Positions created before keep the
+	 * scores they added up.
+	 */
+	static void update() {
+		for (int id = BitBoard.PAWN; id <= BitBoard.KING; id++) {
+			int white = BitBoard.pieceCode(id, true);
+			int black = BitBoard.pieceCode(id, false);
+			for (int sq = 0; sq < 64; sq++) {
+				// the tables start from the 8th rank, black sees them
+				// mirrored
+				MG[white][sq] = MG_VALUES[id] + MG_TABLES[id][sq ^ 56];
+				EG[white][sq] = EG_VALUES[id] + EG_TABLES[id][sq ^ 56];
+				MG[black][sq] = -(MG_VALUES[id] + MG_TABLES[id][sq]);
+				EG[black][sq] = -(EG_VALUES[id] + EG_TABLES[id][sq]);
+			}
+			PHASE[white] = PHASE_WEIGHTS[id];
+			PHASE[black] = PHASE_WEIGHTS[id];
+		}
+	}
+
+	/**
+	 * Returns the number of values that can be tuned.
+	 */
+	public static int parameterCount() {
+		int count = 0;
+		for (int i = 0; i < PARAMETERS.length; i++) {
+			count += PARAMETERS[i].length;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the name of a value that can be tuned, such as
+	 * "MG_VALUES[1]".
+	 * 
+	 * @param index
+	 *            the index of the value in the array of getParameters()
+	 * @return the name of its array and its index in the array
+	 */
+	public static String parameterName(int index) {
+		int i = 0;
+		while (index >= PARAMETERS[i].length) {
+			index -= PARAMETERS[i].length;
+			i++;
+		}
+		return PARAMETER_NAMES[i] + "[" + index + "]";
+	}
+
+	/**
+	 * Returns all the values that can be tuned, one array after the other.
+	 * 
+	 * @return a copy of the values
+	 */
+	public static int[] getParameters() {
+		int[] values = new int[parameterCount()];
+		int index = 0;
+		for (int i = 0; i < PARAMETERS.length; i++) {
+			System.arraycopy(PARAMETERS[i], 0, values, index,
+					PARAMETERS[i].length);
+			index += PARAMETERS[i].length;
+		}
+		return values;
+	}
+
+	/**
+	 * Changes all the values that can be tuned, and the scores computed from
+	 * them.
+	 * 
+	 * @param values
+	 *            the values, in the order of getParameters()
+	 */
+	public static void setParameters(int[] values) {
+		int index = 0;
+		for (int i = 0; i < PARAMETERS.length; i++) {
+			System.arraycopy(values, index, PARAMETERS[i], 0,
+					PARAMETERS[i].length);
+			index += PARAMETERS[i].length;
+		}
+		update();
+	}
+
+	/**
+	 * Writes the values that can be tuned to a file, one array on each line
+	 * after its name.
+	 * 
+	 * @param path
+	 *            the file to write
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public static void save(String path) throws IOException {
+		PrintWriter out = new PrintWriter(new FileWriter(path));
+		try {
+			out.println("# evaluation parameters, one array on each line");
+			for (int i = 0; i < PARAMETERS.length; i++) {
+				StringBuffer line = new StringBuffer(PARAMETER_NAMES[i]);
+				for (int j = 0; j < PARAMETERS[i].length; j++) {
+					line.append(' ').append(PARAMETERS[i][j]);
+				}
+				out.println(line);
+			}
+			if (out.checkError()) {
+				throw new IOException("cannot write " + path);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Reads values written by save(). The arrays left out of the file keep
+	 * their values, and nothing is changed if the file is not valid.
+	 * Positions created before keep the scores they added up, until
+	 * BitBoard.computeScores() is called.
+	 * 
+	 * @param path
+	 *            the file to read
+	 * @throws IOException
+	 *             if the file cannot be read or is not valid
+	 */
+	public static void load(String path) throws IOException {
+		int[][] loaded = new int[PARAMETERS.length][];
+		BufferedReader in = new BufferedReader(new FileReader(path));
+		try {
+			String line;
+			while ((line = in.readLine()) != null) {
+				line = line.trim();
+				if (line.length() == 0 || line.startsWith("#")) {
+					continue;
+				}
+				String[] tokens = line.split("\\s+");
+				int i = Arrays.asList(PARAMETER_NAMES).indexOf(tokens[0]);
+				if (i < 0 || tokens.length != PARAMETERS[i].length + 1) {
+					throw new IOException("bad line in " + path + ": " + line);
+				}
+				loaded[i] = new int[PARAMETERS[i].length];
+				for (int j = 0; j < loaded[i].length; j++) {
+					loaded[i][j] = Integer.parseInt(tokens[j + 1]);
+				}
+			}
+		} catch (NumberFormatException e) {
+			throw new IOException("bad number in " + path);
+		} finally {
+			in.close();
+		}
+
+		for (int i = 0; i < PARAMETERS.length; i++) {
+			if (loaded[i] != null) {
+				System.arraycopy(loaded[i], 0, PARAMETERS[i], 0,
+						loaded[i].length);
+			}
+		}
+		update();
+	}
+
+	/**
+	 * Finds the passed pawns of a side, the pawns no enemy pawn can stop on
+	 * their way to promotion. Only the front pawn of doubled pawns counts.
+	 * 
+	 * @param side
+	 *            WHITE or BLACK
+	 * @param own
+	 *            the pawns of the side
+	 * @param enemy
+	 *            the pawns of the other side
+	 * @return the passed pawns
+	 */
+	public static long passedPawns(int side, long own, long enemy) {
+		long passed = 0;
+		for (long pawns = own; pawns != 0; pawns &= pawns - 1) {
+			int sq = Long.numberOfTrailingZeros(pawns);
+			if ((enemy & PASSED_SPANS[side][sq]) == 0
+					&& (own & FORWARD[side][sq]) == 0) {
+				passed |= 1L << sq;
+			}
+		}
+		return passed;
+	}
+
+	/**
+	 * Evaluates the pawn structure: doubled, isolated, backward and passed
+	 * pawns.
+	 * 
+	 * @param whitePawns
+	 *            the white pawns
+	 * @param blackPawns
+	 *            the black pawns
+	 * @param whitePassed
+	 *            the passed pawns of white
+	 * @param blackPassed
+	 *            the passed pawns of black
+	 * @return the middle game and endgame scores for white, packed by
+	 *         score()
+	 */
+	public static int pawnStructure(long whitePawns, long blackPawns,
+			long whitePassed, long blackPassed) {
+		return sideStructure(BitBoard.WHITE, whitePawns, blackPawns,
+				whitePassed)
+				- sideStructure(BitBoard.BLACK, blackPawns, whitePawns,
+						blackPassed);
+	}
+
+	/**
+	 * Evaluates the pawns of one side.
+	 */
+	private static int sideStructure(int side, long own, long enemy,
+			long passed) {
+		int mg = 0;
+		int eg = 0;
+
+		for (int file = 0; file < 8; file++) {
+			int count = Long.bitCount(own & FILES[file]);
+			if (count > 1) {
+				mg += (count - 1) * DOUBLED_PAWN[0];
+				eg += (count - 1) * DOUBLED_PAWN[1];
+			}
+		}
+
+		for (long pawns = own; pawns != 0; pawns &= pawns - 1) {
+			int sq = Long.numberOfTrailingZeros(pawns);
+			int file = sq & 7;
+			int stop = side == BitBoard.WHITE ? sq + 8 : sq - 8;
+
+			if ((own & ADJACENT_FILES[file]) == 0) {
+				mg += ISOLATED_PAWN[0];
+				eg += ISOLATED_PAWN[1];
+			} else if ((own & SUPPORTS[side][sq]) == 0 && stop >= 0
+					&& stop < 64 && (Attacks.pawn(side, stop) & enemy) != 0) {
+				// no pawn can defend it, and it cannot go forward safely
+				mg += BACKWARD_PAWN[0];
+				eg += BACKWARD_PAWN[1];
+			}
+
+			if ((passed & (1L << sq)) != 0) {
+				int rank = side == BitBoard.WHITE ? sq >>> 3 : 7 - (sq >>> 3);
+				mg += MG_PASSED_PAWN[rank];
+				eg += EG_PASSED_PAWN[rank];
+			}
+		}
+		return score(mg, eg);
+	}
+
+	/**
+	 * Evaluates the passed pawns by how near the kings are to the square in
+	 * front of them, which the pawn structure alone cannot, as the kings
+	 * move without changing the pawns.
+	 * 
+	 * @param b
+	 *            the position
+	 * @param whitePassed
+	 *            the passed pawns of white
+	 * @param blackPassed
+	 *            the passed pawns of black
+	 * @return the endgame score for white, packed by score()
+	 */
+	public static int passedPawnKings(BitBoard b, long whitePassed,
+			long blackPassed) {
+		int whiteKing = b.kingSquare(BitBoard.WHITE);
+		int blackKing = b.kingSquare(BitBoard.BLACK);
+		int eg = 0;
+		for (long pawns = whitePassed; pawns != 0; pawns &= pawns - 1) {
+			int stop = Long.numberOfTrailingZeros(pawns) + 8;
+			int weight = (stop >>> 3) - 3;
+			if (weight > 0) {
+				eg += weight * (distance(whiteKing, stop) * PASSED_PAWN_KING[0]
+						+ distance(blackKing, stop) * PASSED_PAWN_KING[1]);
+			}
+		}
+		for (long pawns = blackPassed; pawns != 0; pawns &= pawns - 1) {
+			int stop = Long.numberOfTrailingZeros(pawns) - 8;
+			int weight = 4 - (stop >>> 3);
+			if (weight > 0) {
+				eg -= weight * (distance(blackKing, stop) * PASSED_PAWN_KING[0]
+						+ distance(whiteKing, stop) * PASSED_PAWN_KING[1]);
+			}
+		}
+		return score(0, eg);
+	}
+
+	/**
+	 * Returns the number of king moves between two squares.
+	 */
+	private static int distance(int a, int b) {
+		return Math.max(Math.abs((a & 7) - (b & 7)),
+				Math.abs((a >>> 3) - (b >>> 3)));
+	}
+
+	/**
+	 * Turn the terms computed from the squares attacked by each side on or
+	 * off: mobility, attacks on the squares around the kings and pieces left
+	 * without defence. They are the slowest part of the evaluation.
+	 * 
+	 * @param on
+	 *            true to evaluate them
+	 */
+	public static void setAttackTerms(boolean on) {
+		attackTerms = on;
+	}
+
+	/**
+	 * Determine if the attack terms are evaluated
+	 * 
+	 * @return true if they are
+	 */
+	public static boolean isAttackTerms() {
+		return attackTerms;
+	}
+
+	/**
+	 * Evaluates the mobility, the attacks on the kings and the hanging pieces
+	 * of a position. The squares attacked by each side are found once, one
+	 * piece at a time from the attack tables.
+	 * 
+	 * @param b
+	 *            the position
+	 * @return the middle game and endgame scores for white, packed by
+	 *         score()
+	 */
+	public static int attacks(BitBoard b) {
+		long whitePawns = b.pieces[BitBoard.PAWN];
+		long blackPawns = b.pieces[6 + BitBoard.PAWN];
+		long whitePawnAttacks = ((whitePawns & ~FILES[0]) << 7)
+				| ((whitePawns & ~FILES[7]) << 9);
+		long blackPawnAttacks = ((blackPawns & ~FILES[0]) >>> 9)
+				| ((blackPawns & ~FILES[7]) >>> 7);
+
+		// the squares attacked by each side
+		long[] attacked = new long[2];
+		int score = sideAttacks(b, BitBoard.WHITE, whitePawnAttacks,
+				blackPawnAttacks, attacked)
+				- sideAttacks(b, BitBoard.BLACK, blackPawnAttacks,
+						whitePawnAttacks, attacked);
+
+		// the pieces attacked and not defended, leaving out the kings
+		long whiteHanging = (b.occupancy[BitBoard.WHITE]
+				& ~b.pieces[BitBoard.KING] & attacked[BitBoard.BLACK])
+				& ~attacked[BitBoard.WHITE];
+		long blackHanging = (b.occupancy[BitBoard.BLACK]
+				& ~b.pieces[6 + BitBoard.KING] & attacked[BitBoard.WHITE])
+				& ~attacked[BitBoard.BLACK];
+		int hanging = Long.bitCount(whiteHanging)
+				- Long.bitCount(blackHanging);
+		return score
+				+ score(hanging * HANGING_PIECE[0], hanging * HANGING_PIECE[1]);
+	}
+
+	/**
+	 * Finds the squares attacked by one side, stored in attacked[side], and
+	 * evaluates its mobility and its attacks on the enemy king.
+	 */
+	private static int sideAttacks(BitBoard b, int side, long pawnAttacks,
+			long enemyPawnAttacks, long[] attacked) {
+		int base = side * 6;
+		long area = ~(b.occupancy[side] | enemyPawnAttacks);
+		int enemyKing = b.kingSquare(1 - side);
+		long kingZone = Attacks.king(enemyKing) | (1L << enemyKing);
+
+		long squares = pawnAttacks | Attacks.king(b.kingSquare(side));
+		int mg = 0;
+		int eg = 0;
+		int kingAttackers = 0;
+		int kingWeight = 0;
+		for (int id = BitBoard.BISHOP; id <= BitBoard.QUEEN; id++) {
+			for (long bits = b.pieces[base + id]; bits != 0; bits &= bits - 1) {
+				int sq = Long.numberOfTrailingZeros(bits);
+				long targets = b.attacksFrom(sq);
+				squares |= targets;
+
+				int mobility = Long.bitCount(targets & area)
+						- MOBILITY_AVERAGE[id];
+				mg += mobility * MG_MOBILITY[id];
+				eg += mobility * EG_MOBILITY[id];
+				if ((targets & kingZone) != 0) {
+					kingAttackers++;
+					kingWeight += KING_ATTACK_WEIGHTS[id]
+							* Long.bitCount(targets & kingZone);
+				}
+			}
+		}
+		if (kingAttackers >= 2) {
+			mg += KING_DANGER[Math.min(kingWeight, KING_DANGER.length - 1)];
+		}
+
+		attacked[side] = squares;
+		return score(mg, eg);
+	}
+
+	/**
+	 * Packs a middle game and an endgame score into one int, so that packed
+	 * scores can be added and subtracted.
+	 */
+	public static int score(int mg, int eg) {
+		return (mg << 16) + eg;
+	}
+
+	/**
+	 * Returns the middle game score of a packed score.
+	 */
+	public static int mg(int score) {
+		return (score + 0x8000) >> 16;
+	}
+
+	/**
+	 * Returns the endgame score of a packed score.
+	 */
+	public static int eg(int score) {
+		return (short) score;
+	}
+
+	/**
+	 * Blends the middle game and the endgame scores by the phase of the
+	 * game.
+	 * 
+	 * @param mg
+	 *            the middle game score
+	 * @param eg
+	 *            the endgame score
+	 * @param phase
+	 *            the phase of the board, MAX_PHASE with all the pieces and 0
+	 *            with only kings and pawns
+	 * @return the score
+	 */
+	public static int blend(int mg, int eg, int phase) {
+		// promotions can take the phase over the one of a full board
+		int p = Math.min(phase, MAX_PHASE);
+		return (mg * p + eg * (MAX_PHASE - p)) / MAX_PHASE;
+	}
+
+}
@@ -336,11 +336,9 @@ public class GameFrame extends JFrame {
 		Object[] option = new Object[5];
 		// Displays the pictures of piece choices.
 
-		option[0] = new ImageIcon("image\\pawnw.gif");
-		option[1] = new ImageIcon("image\\bishopw.gif");
-		option[2] = new ImageIcon("image\\knightw.gif");
-		option[3] = new ImageIcon("image\\rookw.gif");
-		option[4] = new ImageIcon("image\\queenw.gif");
+		for (int i = 0; i < option.length; i++) {
+			option[i] = PieceSprites.getIcon(i, true);
+		}
 
 		int choice = JOptionPane.showOptionDialog(null,
 				"The current level of difficulty is : " + AI.getNoOfPlies()
@@ -385,8 +383,6 @@ public class GameFrame extends JFrame {
 			chessBoard = new Board(BOARD_SIZE);
 			boardIsReversed = false;
 
-			Piece.updateBoard(chessBoard);
-
 			this.addMouseListener(new MouseHandler());
 			this.addMouseMotionListener(new MouseMotionHandler());
 			this.setFocusable(true);
@@ -420,7 +416,7 @@ public class GameFrame extends JFrame {
 				for (int i = 0; i < BOARD_SIZE; i++) {
 					for (int j = 0; j < BOARD_SIZE; j++) {
 						if (chessBoard.getPiece(i, j) != null) {
-							chessBoard.getPiece(i, j).draw(g,
+							PieceSprites.draw(g, chessBoard.getPiece(i, j),
 									(BOARD_SIZE - 1 - i) * SQUARE_SIZE,
 									j * SQUARE_SIZE);
 						}
@@ -429,7 +425,8 @@ public class GameFrame extends JFrame {
 
 				// reversed current piece
 				if (selectedPiece != null) {
-					selectedPiece.draw(g, draggedXPos, draggedYPos);
+					PieceSprites.draw(g, selectedPiece, draggedXPos,
+							draggedYPos);
 
 				}
 			} else {
@@ -457,15 +454,17 @@ public class GameFrame extends JFrame {
 				for (int i = 0; i < BOARD_SIZE; i++) {
 					for (int j = 0; j < BOARD_SIZE; j++) {
 						if (chessBoard.getPiece(i, j) != null) {
-							chessBoard.getPiece(i, j).draw(g, i * SQUARE_SIZE,
-									(BOARD_SIZE - 1 - j) * SQUARE_SIZE);
+							PieceSprites.draw(g, chessBoard.getPiece(i, j),
+									i * SQUARE_SIZE, (BOARD_SIZE - 1 - j)
+											* SQUARE_SIZE);
 						}
 					}
 				}
 
 				// Draw the current piece
 				if (selectedPiece != null) {
-					selectedPiece.draw(g, draggedXPos, draggedYPos);
+					PieceSprites.draw(g, selectedPiece, draggedXPos,
+							draggedYPos);
 
 				}
 			}
@@ -650,7 +649,6 @@ public class GameFrame extends JFrame {
 					selectedPiece = null;
 					currentCoordinate = null;
 					currentPossibleMoves = null;
-					Piece.updateBoard(chessBoard);
 					setCursor(Cursor.getDefaultCursor());
 
 					repaint();
@@ -728,7 +726,6 @@ public class GameFrame extends JFrame {
 				}
 				AI ai = new AI(chessBoard, AIColor);
 				Move aiMove = ai.getBestMove();
-				Piece.updateBoard(chessBoard);
 				chessBoard.makeMove(aiMove);
 				repaint();
 				displayInCheck();
@@ -19,6 +19,8 @@ public class Move {
 	public boolean castled;
 	public boolean leftCastle;
 	public boolean rightCastle;
+	// the halfmove clock of the board before the move, to undo it
+	public int halfmoveClock;
 
 	public Move() {
 
@@ -106,6 +108,53 @@ public class Move {
 		rightCastle = false;
 	}
 
+	/**
+	 * Creates the Move object of a packed move, so that a move found by the
+	 * search can be made on the board and shown in the history.
+	 * 
+	 * @param b
+	 *            the board the move is made on
+	 * @param packed
+	 *            the packed move, see PackedMove
+	 * @return the Move object
+	 */
+	public static Move decode(Board b, int packed) {
+		int from = PackedMove.from(packed);
+		int to = PackedMove.to(packed);
+		int flags = PackedMove.flags(packed);
+		int er = to & 7;
+		int ec = to >>> 3;
+		Piece moved = b.getPiece(from & 7, from >>> 3);
+
+		// promotion
+		if (PackedMove.isPromotion(packed)) {
+			Piece promoted;
+			switch (PackedMove.promotion(packed)) {
+			case BitBoard.ROOK:
+				promoted = new Rook(moved.color, moved.row, moved.col);
+				break;
+			case BitBoard.BISHOP:
+				promoted = new Bishop(moved.color, moved.row, moved.col);
+				break;
+			case BitBoard.KNIGHT:
+				promoted = new Knight(moved.color, moved.row, moved.col);
+				break;
+			default:
+				promoted = new Queen(moved.color, moved.row, moved.col);
+			}
+			return new Move(er, ec, promoted, b.getPiece(er, ec), moved);
+		}
+
+		// enPassant, the captured pawn is beside the moved pawn
+		if (flags == PackedMove.EN_PASSANT) {
+			return new Move(er, ec, moved, b.getPiece(er, moved.col), false);
+		}
+
+		return new Move(er, ec, moved, b.getPiece(er, ec),
+				flags == PackedMove.KING_CASTLE
+						|| flags == PackedMove.QUEEN_CASTLE);
+	}
+
 	// Compares the score of this move to move m (after scores were calculated)
 	public int compareTo(Object objCompared) {
 		return (int) (((Move) objCompared).evaluation * 1000 - 1000 * evaluation);
@@ -0,0 +1,111 @@
+/**
+ * Helpers for moves packed into a single int, used by the search so that no
+ * Move object has to be created for every generated move. The lowest 6 bits
+ * hold the starting square, the next 6 bits the ending square (squares are
+ * numbered as in BitBoard) and bits 12 to 15 hold the kind of the move.
+ */
+public final class PackedMove {
+
+	// no move, a1 to a1 can never be played
+	public static final int NONE = 0;
+
+	// kinds of moves
+	public static final int QUIET = 0;
+	public static final int DOUBLE_PUSH = 1;
+	public static final int KING_CASTLE = 2;
+	public static final int QUEEN_CASTLE = 3;
+	public static final int CAPTURE = 4;
+	public static final int EN_PASSANT = 5;
+	// promotions add the index of the new piece in PROMOTION_PIECES
+	public static final int PROMOTION = 8;
+	public static final int PROMOTION_CAPTURE = 12;
+
+	private static final int[] PROMOTION_PIECES = { BitBoard.KNIGHT,
+			BitBoard.BISHOP, BitBoard.ROOK, BitBoard.QUEEN };
+	private static final String FILES = "abcdefgh";
+	private static final String PROMOTION_LETTERS = "nbrq";
+
+	private PackedMove() {
+	}
+
+	/**
+	 * Packs a move into an int.
+	 * 
+	 * @param from
+	 *            the starting square
+	 * @param to
+	 *            the ending square
+	 * @param flags
+	 *            the kind of the move
+	 * @return the packed move
+	 */
+	public static int encode(int from, int to, int flags) {
+		return from | (to << 6) | (flags << 12);
+	}
+
+	/**
+	 * Returns the starting square of a packed move.
+	 */
+	public static int from(int move) {
+		return move & 63;
+	}
+
+	/**
+	 * Returns the ending square of a packed move.
+	 */
+	public static int to(int move) {
+		return (move >>> 6) & 63;
+	}
+
+	/**
+	 * Returns the kind of a packed move.
+	 */
+	public static int flags(int move) {
+		return (move >>> 12) & 15;
+	}
+
+	/**
+	 * Determines if a packed move captures a piece (en passant included).
+	 */
+	public static boolean isCapture(int move) {
+		return (flags(move) & CAPTURE) != 0;
+	}
+
+	/**
+	 * Determines if a packed move promotes a pawn.
+	 */
+	public static boolean isPromotion(int move) {
+		return (flags(move) & PROMOTION) != 0;
+	}
+
+	/**
+	 * Returns the identity number of the piece a pawn is promoted to.
+	 * (precondition) the move is a promotion.
+	 */
+	public static int promotion(int move) {
+		return PROMOTION_PIECES[flags(move) & 3];
+	}
+
+	/**
+	 * Returns the name of a square, such as "e4".
+	 */
+	public static String squareName(int sq) {
+		return "" + FILES.charAt(sq & 7) + ((sq >>> 3) + 1);
+	}
+
+	/**
+	 * Converts a packed move to coordinate notation, such as "e2e4" or "e7e8q".
+	 * 
+	 * @param move
+	 *            the packed move
+	 * @return the move in coordinate notation
+	 */
+	public static String toString(int move) {
+		String notation = squareName(from(move)) + squareName(to(move));
+		if (isPromotion(move)) {
+			notation += PROMOTION_LETTERS.charAt(flags(move) & 3);
+		}
+		return notation;
+	}
+
+}
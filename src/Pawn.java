@@ -1,11 +1,8 @@
 import java.awt.Point;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
-import javax.swing.ImageIcon;
-
 public class Pawn extends Piece {
 
 	protected boolean canEnPassantLeft;
@@ -32,111 +29,6 @@ public class Pawn extends Piece {
 
 		this.color = color;
 		setCoordinates(row, col);
-
-		if (color == WHITE) {
-			image = new ImageIcon("image\\pawnw.gif").getImage();
-		} else {
-			image = new ImageIcon("image\\pawnb.gif").getImage();
-		}
-	}
-
-	public Set<Point> generateValidMoves() {
-
-		Set<Point> validMoves = new HashSet<Point>();
-
-		// If the king is under two threats, no moves can be done.
-		if (threatsToKing[1] != null) {
-			return validMoves;
-		}
-
-		// Check if the pawn is protecting king from a threat
-		boolean guardsKing = isProtectingKing();
-
-		// If a single piece is putting the king in check, and the pawn is
-		// currently blocking the king from another potential threat. No moves
-		// can be done.
-		if (threatsToKing[0] != null && guardsKing) {
-
-			return validMoves;
-		}
-
-		int checkRow = row;
-		int checkCol = col;
-
-		int colShift;
-
-		// determine if the piece would move in which direction
-		if (this.color == WHITE) {
-			colShift = 1;
-		} else {
-			colShift = -1;
-		}
-
-		checkCol += colShift;
-
-		// generate forward moves
-		if (onGrid(checkRow, checkCol) && isEmpty(checkRow, checkCol)) {
-			validMoves.add(new Point(checkRow, checkCol));
-
-			if (this.color == WHITE && col == 1
-					&& isEmpty(checkRow, checkCol + 1)) {
-				validMoves.add(new Point(checkRow, checkCol + 1));
-			} else if (this.color == BLACK && col == 6
-					&& isEmpty(checkRow, checkCol - 1)) {
-				validMoves.add(new Point(checkRow, checkCol - 1));
-			}
-		}
-
-		checkCol = col;
-		checkRow = row - 1;
-
-		if (color == WHITE) {
-			checkCol++;
-		} else {
-			checkCol--;
-		}
-		// left capture
-		if (pawnCaptureCheck(checkRow, checkCol)) {
-			validMoves.add(new Point(checkRow, checkCol));
-		}
-
-		checkRow += 2;
-
-		// right capture
-		if (pawnCaptureCheck(checkRow, checkCol)) {
-			validMoves.add(new Point(checkRow, checkCol));
-		}
-
-		// Determine en passant left.
-		if (canEnPassantLeft ) {
-			validMoves.add(new Point(row - 1, col + colShift));
-			// System.out.println(row+" "+col);
-		}
-
-		// Determine en passant right.
-		if (canEnPassantRight ) {
-			validMoves.add(new Point(row + 1, col + colShift));
-			// System.out.println(row+" "+col);
-		}
-
-		// if the king is under one threat and this pawn is not protecting the
-		// king at the moment, generate the moves that will protect the king
-
-		if (threatsToKing[0] != null && !guardsKing) {
-			validMoves.retainAll(kingProtectingMoves(threatsToKing[0]));
-			return validMoves;
-		}
-
-		// generates all moves in which the pawn will not endanger the king
-		// assuming it is standing between the king and a potential threat.
-
-		if (guardsKing) {
-			validMoves.retainAll(kingBlockerMoves());
-			return validMoves;
-		}
-
-		return validMoves;
-
 	}
 
 	public List<Move> generateMoves() {
@@ -167,11 +59,6 @@ public class Pawn extends Piece {
 		return moves;
 	}
 
-	private boolean pawnCaptureCheck(int checkRow, int checkCol) {
-		return onGrid(checkRow, checkCol) && !isEmpty(checkRow, checkCol)
-				&& isEnemy(checkRow, checkCol);
-	}
-
 	public void checkEnPassant() {
 
 		// white enPassants
@@ -210,57 +97,6 @@ public class Pawn extends Piece {
 
 	}
 
-	/**
-	 * Using the given location of the enemy pawn which will be captured and
-	 * determine if it will be allowed. this method assumes the enPassant is
-	 * possible without regard to the king, and ensures that it will not be in
-	 * check afterwards, constituting a safe enPassant.
-	 * 
-	 * @param enemyPawnRow
-	 *            The row of the enemy pawn which will be captured.
-	 * @param enemyPawnCol
-	 *            The column of the enemy pawn which will be captured.
-	 * @return true if the enPassant can be made without endangering the king.
-	 *//*
-	private boolean safeEnPassant(int enemyPawnRow, int enemyPawnCol) {
-
-		// Finds the direction of the enemy pawn to the allied king.
-		Piece possibleEnemyBlocker = getPiece(enemyPawnRow, enemyPawnCol);
-
-		// if (possibleEnemyBlocker == null){
-		// return false;
-		// }
-		int[] dir = possibleEnemyBlocker.directionToPiece(getKingOfSameColor());
-
-		// If there is no specific direction to the king, then there is no way
-		// moving this piece will have any effect on the game.
-		if (dir == null) {
-			return true;
-		}
-
-		// If the king is protected by another piece, moving this piece wont
-		// matter.
-		if (!possibleEnemyBlocker.firstPieceInDirection(dir).equals(
-				getKingOfSameColor())) {
-			return true;
-		}
-
-		// Determines if the threatening piece will cause a check if the piece
-		// is moved.
-		Piece challengingPiece = possibleEnemyBlocker
-				.firstPieceInDirection(reverseDirection(dir));
-		if (challengingPiece != null) {
-			if (goesDiagonal(dir)
-					&& (challengingPiece.identity == BISHOP || challengingPiece.identity == QUEEN)) {
-				return false;
-			} else if (!goesDiagonal(dir)
-					&& (challengingPiece.identity == ROOK || challengingPiece.identity == QUEEN)) {
-				return false;
-			}
-		}
-		return true;
-	}*/
-	
 	public Piece getCopyOf() {
 		Pawn copy = new Pawn(color, row, col);
 		copy.canEnPassantLeft = this.canEnPassantLeft;
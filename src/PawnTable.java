@@ -0,0 +1,126 @@
+/**
+ * A table of the pawn structures already evaluated, indexed by the pawn key
+ * of BitBoard. Most positions of a search share their pawns with many others,
+ * so the pawn structure is evaluated once and then looked up. Each Searcher
+ * has its own table, so no locking is needed.
+ */
+public class PawnTable {
+
+	// bytes of an entry: the key, the score and the passed pawns of each side
+	private static final int ENTRY_SIZE = 8 + 4 + 16;
+
+	private long[] keys;
+	private int[] scores;
+	private long[] passed;
+	private int mask;
+
+	// the lookups and the ones that found their entry, since the last reset
+	private long probes;
+	private long hits;
+
+	/**
+	 * Creates an empty table.
+	 * 
+	 * @param kilobytes
+	 *            the size of the table, rounded down to a power of two of
+	 *            entries
+	 */
+	public PawnTable(int kilobytes) {
+		int entries = Integer.highestOneBit((int) Math.max(
+				Math.min(kilobytes * 1024L / ENTRY_SIZE, 1 << 24), 1));
+		keys = new long[entries];
+		scores = new int[entries];
+		passed = new long[entries * 2];
+		mask = entries - 1;
+		// an empty entry has the key of a position without pawns, and the
+		// right score and passed pawns for it, so empty entries need no mark
+		// of their own
+	}
+
+	/**
+	 * Finds the entry of the pawns of a position, evaluating them if they
+	 * are not in the table.
+	 * 
+	 * @param b
+	 *            the position
+	 * @return the index of the entry
+	 */
+	public int probe(BitBoard b) {
+		long key = b.pawnHash();
+		int index = (int) key & mask;
+		probes++;
+		if (keys[index] == key) {
+			hits++;
+			return index;
+		}
+
+		long white = b.pieces[BitBoard.PAWN];
+		long black = b.pieces[6 + BitBoard.PAWN];
+		long whitePassed = Evaluation.passedPawns(BitBoard.WHITE, white, black);
+		long blackPassed = Evaluation.passedPawns(BitBoard.BLACK, black, white);
+		keys[index] = key;
+		scores[index] = Evaluation.pawnStructure(white, black, whitePassed,
+				blackPassed);
+		passed[index * 2 + BitBoard.WHITE] = whitePassed;
+		passed[index * 2 + BitBoard.BLACK] = blackPassed;
+		return index;
+	}
+
+	/**
+	 * Returns the score of the pawn structure of an entry.
+	 * 
+	 * @param index
+	 *            the index returned by probe()
+	 * @return the middle game and endgame scores for white, packed by
+	 *         Evaluation.score()
+	 */
+	public int score(int index) {
+		return scores[index];
+	}
+
+	/**
+	 * Returns the passed pawns of a side of an entry, which the evaluation
+	 * scores again by the squares of the kings.
+	 * 
+	 * @param index
+	 *            the index returned by probe()
+	 * @param side
+	 *            WHITE or BLACK
+	 * @return the passed pawns
+	 */
+	public long passedPawns(int index, int side) {
+		return passed[index * 2 + side];
+	}
+
+	/**
+	 * Removes all the entries, after the pawn evaluation has changed.
+	 */
+	public void clear() {
+		java.util.Arrays.fill(keys, 0);
+		java.util.Arrays.fill(scores, 0);
+		java.util.Arrays.fill(passed, 0);
+	}
+
+	/**
+	 * Sets the number of lookups and hits back to 0.
+	 */
+	public void resetCounts() {
+		probes = 0;
+		hits = 0;
+	}
+
+	/**
+	 * Get the number of lookups since the last reset.
+	 */
+	public long getProbes() {
+		return probes;
+	}
+
+	/**
+	 * Get the number of lookups that found their entry since the last reset.
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+}
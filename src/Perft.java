@@ -0,0 +1,314 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts the leaves of the tree of legal moves of a position to a fixed depth.
+ * The counts of well known positions are published, so a wrong count points
+ * at a bug in the move generator, and the time taken measures how fast moves
+ * are generated, made and taken back. The moves of the first ply are counted
+ * in parallel, and a table of the counts of positions already seen can be
+ * used to skip subtrees reached again through another order of moves.
+ * 
+ * Usage: java Perft [-divide] [-threads n] [-hash mb] depth [fen]
+ * <br>
+ * or: java Perft [-threads n] [-hash mb] -suite
+ */
+public class Perft {
+
+	// positions with known counts: the position, the depth and the count
+	private static final String[][] SUITE = {
+			{ BitBoard.START_POSITION, "5", "4865609" },
+			{ "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq -",
+					"4", "4085603" },
+			{ "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - -", "6", "11030083" },
+			{ "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq -",
+					"5", "15833292" },
+			{ "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ -", "4",
+					"2103487" },
+			{ "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/"
+					+ "R4RK1 w - -", "4", "3894594" } };
+
+	private ForkJoinPool pool;
+
+	// the counts of positions already seen, two longs for each entry: the key
+	// of the position exclusive or the data, and the data, which is the count
+	// shifted left by 8 bits and the depth, null if no table is used
+	private long[] table;
+	private int tableMask;
+
+	/**
+	 * Creates a counter.
+	 * 
+	 * @param threads
+	 *            the number of threads counting the moves of the first ply
+	 * @param megabytes
+	 *            the size of the table of counts, 0 to use no table
+	 */
+	public Perft(int threads, int megabytes) {
+		pool = new ForkJoinPool(Math.max(threads, 1));
+		if (megabytes > 0) {
+			int entries = Integer.highestOneBit((int) Math.min(megabytes
+					* 1024L * 1024L / 16, 1 << 27));
+			table = new long[entries * 2];
+			tableMask = entries - 1;
+		}
+	}
+
+	/**
+	 * Counts the leaves of the tree of a position.
+	 * 
+	 * @param position
+	 *            the position, which is left unchanged
+	 * @param depth
+	 *            the depth of the tree
+	 * @return the number of leaves
+	 */
+	public long perft(BitBoard position, int depth) {
+		if (depth <= 0) {
+			return 1;
+		}
+		int[] moves = new int[AI.MAX_MOVES];
+		int count = position.generateMoves(moves, 0);
+		long nodes = 0;
+		for (long n : divide(position, depth, moves, count)) {
+			nodes += n;
+		}
+		return nodes;
+	}
+
+	/**
+	 * Counts the leaves below each move of the first ply, each move being
+	 * counted by its own task.
+	 * 
+	 * @param position
+	 *            the position, which is left unchanged
+	 * @param depth
+	 *            the depth of the tree, at least 1
+	 * @param moves
+	 *            the legal moves of the position
+	 * @param count
+	 *            the number of moves
+	 * @return the number of leaves below each move
+	 */
+	public long[] divide(BitBoard position, int depth, int[] moves, int count) {
+		RootMoveTask[] tasks = new RootMoveTask[count];
+		for (int i = 0; i < count; i++) {
+			tasks[i] = new RootMoveTask(position, moves[i], depth - 1);
+			pool.execute(tasks[i]);
+		}
+
+		long[] nodes = new long[count];
+		for (int i = 0; i < count; i++) {
+			nodes[i] = tasks[i].join();
+		}
+		return nodes;
+	}
+
+	/**
+	 * Stops the threads of the counter.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Counts the leaves of the tree of a position. The moves of the last ply
+	 * are not made, as their number is the number of leaves.
+	 * 
+	 * @param b
+	 *            the position
+	 * @param depth
+	 *            the depth of the tree
+	 * @param moveLists
+	 *            an array of moves for each ply
+	 * @param ply
+	 *            the distance from the first ply
+	 * @return the number of leaves
+	 */
+	private long count(BitBoard b, int depth, int[][] moveLists, int ply) {
+		if (depth == 0) {
+			return 1;
+		}
+		int[] moves = moveLists[ply];
+		int count = b.generateMoves(moves, 0);
+		if (depth == 1) {
+			return count;
+		}
+
+		long key = b.hash();
+		int index = ((int) key & tableMask) * 2;
+		if (table != null) {
+			long data = table[index + 1];
+			if ((table[index] ^ data) == key && (data & 0xFF) == depth) {
+				return data >>> 8;
+			}
+		}
+
+		long nodes = 0;
+		for (int i = 0; i < count; i++) {
+			b.makeMove(moves[i]);
+			nodes += count(b, depth - 1, moveLists, ply + 1);
+			b.unmakeMove(moves[i]);
+		}
+
+		if (table != null) {
+			long data = nodes << 8 | depth;
+			table[index] = key ^ data;
+			table[index + 1] = data;
+		}
+		return nodes;
+	}
+
+	/**
+	 * Counts the leaves below one move of the first ply on its own copy of
+	 * the position.
+	 */
+	private class RootMoveTask extends RecursiveTask<Long> {
+
+		private static final long serialVersionUID = 1L;
+
+		private BitBoard position;
+		private int move;
+		private int depth;
+
+		RootMoveTask(BitBoard root, int move, int depth) {
+			position = new BitBoard();
+			position.copyFrom(root);
+			this.move = move;
+			this.depth = depth;
+		}
+
+		protected Long compute() {
+			position.makeMove(move);
+			return count(position, depth, new int[depth + 1][AI.MAX_MOVES], 0);
+		}
+	}
+
+	/**
+	 * Prints the counts of a position, or checks the counts of the known
+	 * positions.
+	 * 
+	 * @param args
+	 *            the options, the depth and the position, the start position
+	 *            if there is none
+	 */
+	public static void main(String[] args) {
+		boolean divide = false;
+		boolean suite = false;
+		int threads = Runtime.getRuntime().availableProcessors();
+		int megabytes = 0;
+		int depth = -1;
+		StringBuffer fen = new StringBuffer();
+
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("-divide")) {
+					divide = true;
+				} else if (args[i].equals("-suite")) {
+					suite = true;
+				} else if (args[i].equals("-threads")) {
+					threads = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-hash")) {
+					megabytes = Integer.parseInt(args[++i]);
+				} else if (depth < 0) {
+					depth = Integer.parseInt(args[i]);
+				} else {
+					fen.append(args[i]).append(' ');
+				}
+			}
+		} catch (RuntimeException e) {
+			depth = -1;
+		}
+		if (!suite && depth < 1) {
+			System.err.println("Usage: java Perft [-divide] [-threads n] "
+					+ "[-hash mb] depth [fen]");
+			System.err.println("       java Perft [-threads n] [-hash mb] "
+					+ "-suite");
+			System.exit(1);
+		}
+
+		Perft perft = new Perft(threads, megabytes);
+		try {
+			if (suite) {
+				runSuite(perft);
+			} else {
+				BitBoard position = new BitBoard(
+						fen.length() == 0 ? BitBoard.START_POSITION : fen
+								.toString());
+				run(perft, position, depth, divide);
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+		} finally {
+			perft.shutdown();
+		}
+	}
+
+	/**
+	 * Counts the leaves of a position and prints them with the speed.
+	 */
+	private static void run(Perft perft, BitBoard position, int depth,
+			boolean divide) {
+		long start = System.nanoTime();
+		int[] moves = new int[AI.MAX_MOVES];
+		int count = position.generateMoves(moves, 0);
+		long[] counts = perft.divide(position, depth, moves, count);
+		long time = System.nanoTime() - start;
+
+		long nodes = 0;
+		for (int i = 0; i < count; i++) {
+			if (divide) {
+				System.out.println(PackedMove.toString(moves[i]) + ": "
+						+ counts[i]);
+			}
+			nodes += counts[i];
+		}
+		if (divide) {
+			System.out.println();
+			System.out.println("Moves: " + count);
+		}
+		System.out.println("Nodes: " + nodes);
+		printSpeed(nodes, time);
+	}
+
+	/**
+	 * Counts the leaves of the known positions and compares them with the
+	 * published counts.
+	 */
+	private static void runSuite(Perft perft) {
+		long start = System.nanoTime();
+		long total = 0;
+		int failures = 0;
+		for (String[] test : SUITE) {
+			BitBoard position = new BitBoard(test[0]);
+			int depth = Integer.parseInt(test[1]);
+			long expected = Long.parseLong(test[2]);
+			long nodes = perft.perft(position, depth);
+			total += nodes;
+
+			if (nodes != expected) {
+				failures++;
+			}
+			System.out.println((nodes == expected ? "OK   " : "FAIL ") + test[0]
+					+ " depth " + depth + ": " + nodes + " (expected "
+					+ expected + ")");
+		}
+		printSpeed(total, System.nanoTime() - start);
+		if (failures > 0) {
+			System.out.println(failures + " of " + SUITE.length
+					+ " positions failed");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Prints the time taken and the leaves counted per second.
+	 */
+	private static void printSpeed(long nodes, long nanos) {
+		long millis = Math.max(nanos / 1000000, 1);
+		System.out.println("Time: " + millis + " ms");
+		System.out.println("NPS: " + nodes * 1000 / millis);
+	}
+
+}
@@ -1,5 +1,3 @@
-import java.awt.Graphics;
-import java.awt.Image;
 import java.awt.Point;
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -10,9 +8,8 @@ abstract class Piece {
 
 	protected final boolean BLACK = false;
 	protected final boolean WHITE = true;
-	protected static Board myBoard;
-	protected static Piece[] threatsToKing;
-	protected Image image;
+	// the board the piece is placed on, set by Board.setBoard()
+	protected Board myBoard;
 	protected int row;
 	protected int col;
 	protected boolean color;
@@ -52,32 +49,6 @@ abstract class Piece {
 		this.col = col;
 	}
 
-	/**
-	 * Draw the image of piece on the screen
-	 * 
-	 * @param g
-	 *            graphics context
-	 * @param x
-	 *            the x position of the image
-	 * @param y
-	 *            the y position of the image
-	 */
-	public void draw(Graphics g, int x, int y) {
-		g.drawImage(image, x, y, null);
-	}
-
-	/**
-	 * Update the current board to the piece class
-	 * 
-	 * @param b
-	 *            current board
-	 */
-	public static void updateBoard(Board b) {
-		myBoard = b;
-
-		// System.out.println(myBoard);
-	}
-
 	/**
 	 * Determines if the given point is on the grid or not.
 	 * 
@@ -175,12 +146,23 @@ abstract class Piece {
 	public abstract String toString();
 
 	/**
-	 * Will generate all of the possible valid moves.
+	 * Will generate all of the possible valid moves. The board generates the
+	 * legal moves of all the pieces of a color once for each position, and
+	 * the moves of this piece are taken from them.
 	 * 
 	 * @return a set of all the possible moves for the object at the current
 	 *         moment in time.
 	 */
-	public abstract Set<Point> generateValidMoves();
+	public Set<Point> generateValidMoves() {
+		Set<Point> validMoves = new HashSet<Point>();
+		long targets = myBoard.legalTargets(this);
+		while (targets != 0) {
+			int to = Long.numberOfTrailingZeros(targets);
+			validMoves.add(new Point(to & 7, to >>> 3));
+			targets &= targets - 1;
+		}
+		return validMoves;
+	}
 
 	/**
 	 * Transforms the Set of Points to a List of Moves
@@ -199,340 +181,6 @@ abstract class Piece {
 		return moves;
 	}
 
-	/**
-	 * Reverses a direction.
-	 * 
-	 * @param dir
-	 *            the direction which will be reversed.
-	 * @return the direction which travels in the opposite direction.
-	 */
-	protected int[] reverseDirection(int[] dir) {
-
-		int[] reverse = { dir[0] * -1, dir[1] * -1 };
-		return reverse;
-	}
-
-	/**
-	 * Determines if a piece is traveling diagonally or not.
-	 * 
-	 * @param dir
-	 *            the direction to be determined
-	 * @return true if the direction is diagonal, false otherwise
-	 */
-	protected boolean goesDiagonal(int[] dir) {
-		return (dir[0] != 0 && dir[1] != 0);
-	}
-
-	/**
-	 * Finds the direction of a piece from this piece. (will be used for move
-	 * generation an limiting so that a move will not place the king in check)
-	 * 
-	 * @param other
-	 *            The piece which we will find the direction to.
-	 * 
-	 * @return An array of two integers containing the direction of the king. If
-	 *         it cannot be represented like this, it will return null;
-	 */
-	protected int[] directionToPiece(Piece other) {
-
-		if (other == null) {
-			return null;
-		}
-
-		int rowShift = other.row - this.row;
-		int colShift = other.col - this.col;
-
-		if (rowShift == 0) {
-			if (colShift > 0) {
-				return TOP;
-			} else {
-				return BOTTOM;
-			}
-
-		} else if (colShift == 0) {
-			if (rowShift > 0) {
-				return RIGHT;
-			} else {
-				return LEFT;
-			}
-		}
-
-		if (Math.abs(rowShift) == Math.abs(colShift)) {
-			if (rowShift > 0) {
-				if (colShift > 0) {
-					return TOPRIGHT;
-				} else {
-					return BOTTOMRIGHT;
-				}
-			} else {
-				if (colShift > 0) {
-					return TOPLEFT;
-				} else {
-					return BOTTOMLEFT;
-				}
-			}
-		}
-
-		return null;
-
-	}
-
-	/**
-	 * Finds the first piece in a given direction from the the current piece
-	 * 
-	 * 
-	 * @param rowDirection
-	 *            the direction of the row in which to move.
-	 * @param colDirection
-	 *            the direction of the columns in which to move.
-	 * @return the first piece in the specified direction
-	 */
-	protected Piece firstPieceInDirection(int[] dir) {
-
-		int dirX = dir[0];
-		int dirY = dir[1];
-
-		int checkRow = row + dirX;
-		int checkCol = col + dirY;
-
-		while (onGrid(checkRow, checkCol)) {
-
-			if (!isEmpty(checkRow, checkCol)) {
-				return getPiece(checkRow, checkCol);
-			}
-
-			checkRow += dirX;
-			checkCol += dirY;
-
-		}
-
-		return null;
-	}
-
-	/**
-	 * Determines if the piece is protecting the king or not by serving as a
-	 * piece impeding the path of another which will otherwise target the king.
-	 * 
-	 * @return true if the piece is blocking the king from check, false if not
-	 */
-	protected boolean isProtectingKing() {
-
-		// There is no chance of protecting the king if the challenging piece is
-		// pawn or knight
-
-		int[] dirOfKing;
-
-		dirOfKing = directionToPiece(getKingOfSameColor());
-
-		if (dirOfKing != null) {
-
-			Piece firstInDirection = firstPieceInDirection(dirOfKing);
-
-			// check if the current piece is on the horizontal, vertical, or
-			// diagonal direction to the king
-			if (firstInDirection != null && firstInDirection.identity == KING
-					&& !isEnemy(firstInDirection.row, firstInDirection.col)) {
-				// finds the enemy piece that creates a potential threat to the
-				// king
-				int[] reverse = reverseDirection(dirOfKing);
-				Piece challengingPiece = firstPieceInDirection(reverse);
-
-				if (challengingPiece == null) {
-					return false;
-				}
-
-				// determines if something is blocking the king horizontally or
-				// vertically
-				if (!goesDiagonal(reverse)
-						&& (challengingPiece.identity == ROOK || challengingPiece.identity == QUEEN)
-						&& isEnemy(challengingPiece.row, challengingPiece.col)) {
-					return true;
-					// determines if something is blocking the king diagonally.
-				} else if (goesDiagonal(reverse)
-						&& (challengingPiece.identity == BISHOP || challengingPiece.identity == QUEEN)
-						&& isEnemy(challengingPiece.row, challengingPiece.col)) {
-					return true;
-				}
-			}
-		}
-		return false;
-
-	}
-
-	/**
-	 * Return the king which has the same color as the current piece
-	 * 
-	 * @return the king of same color
-	 */
-	protected King getKingOfSameColor() {
-		if (this.color == WHITE) {
-			return myBoard.whiteKing;
-		} else {
-			return myBoard.blackKing;
-		}
-	}
-
-	/**
-	 * Generate all moves that can stop the challenging piece from targeting the
-	 * king.
-	 * 
-	 * @param challengingPiece
-	 *            the piece that is currently placing the king in check.
-	 * @return a list of all the moves which will prevent the check.
-	 */
-	protected Set<Point> kingProtectingMoves(Piece challengingPiece) {
-
-		Set<Point> moves = new HashSet<Point>();
-
-		// capturing the challenging piece is one method of protecting king
-		moves.add(challengingPiece.getPoint());
-		int initial;
-		int terminal;
-
-		// There is no chance of protecting the king if the challenging piece is
-		// pawn or knight
-
-		// if the challenging piece is a rook or queen (in check either in
-		// vertical or horizontal direction
-		if (challengingPiece.identity == ROOK
-				|| challengingPiece.identity == QUEEN) {
-			// get the coordinates of both the king and the challenging piece
-			int challengingRow = challengingPiece.row;
-			int challengingCol = challengingPiece.col;
-			int myKingRow = getKingOfSameColor().row;
-			int myKingCol = getKingOfSameColor().col;
-
-			// if the king is checked in vertical direction
-			if (challengingRow == myKingRow) {
-				// determine if the challenging piece is above or below the king
-				if (challengingCol > myKingCol) {
-					initial = myKingCol;
-					terminal = challengingCol;
-				} else {
-					initial = challengingCol;
-					terminal = myKingCol;
-				}
-				// add all positions between the two pieces
-				for (int i = initial + 1; i < terminal; i++) {
-					moves.add(new Point(challengingRow, i));
-				}
-				// if the king is checked in horizontal direction
-			} else if (challengingCol == myKingCol) {
-				// determine if the challenging piece is on the left of right of
-				// the king
-				if (challengingRow > myKingRow) {
-					initial = myKingRow;
-					terminal = challengingRow;
-				} else {
-					initial = challengingRow;
-					terminal = myKingRow;
-				}
-				// add all positions in between the two
-				for (int i = initial + 1; i < terminal; i++) {
-					moves.add(new Point(i, challengingCol));
-				}
-			}
-		}
-		// if the challenging piece is a bishop or a queen (the king is in check
-		// in diagonal direction)
-		if (challengingPiece.identity == BISHOP
-				|| challengingPiece.identity == QUEEN) {
-
-			// get coordinates of two pieces
-			int challengingRow = challengingPiece.row;
-			int challengingCol = challengingPiece.col;
-			int myKingRow = getKingOfSameColor().row;
-			int myKingCol = getKingOfSameColor().col;
-
-			// if the king is in check in northeast-southwest direction
-			if (challengingRow - myKingRow == challengingCol - myKingCol) {
-				int diff;
-				// determine which one is at east, which one is at west
-				if (challengingRow > myKingRow) {
-					initial = myKingRow;
-					diff = myKingRow - myKingCol;
-					terminal = challengingRow;
-				} else {
-					initial = challengingRow;
-					diff = challengingRow - challengingCol;
-					terminal = myKingRow;
-				}
-				// add all positions in between
-				for (int i = initial + 1; i < terminal; i++) {
-					moves.add(new Point(i, i - diff));
-
-				}
-				// if the king is in check in northwest-southeast direction
-			} else if (challengingRow + challengingCol == myKingRow + myKingCol) {
-				int sum = myKingRow + myKingCol;
-				// determine which piece is at east, which piece is at west
-				if (challengingRow > myKingRow) {
-					initial = myKingRow;
-
-					terminal = challengingRow;
-				} else {
-					initial = challengingRow;
-
-					terminal = myKingRow;
-				}
-				// add all positions between two pieces
-				for (int i = initial + 1; i < terminal; i++) {
-					moves.add(new Point(i, sum - i));
-
-				}
-			}
-
-		}
-
-		return moves;
-	}
-
-	/**
-	 * Generates a list of moves which will ensure the king is not placed in
-	 * check.
-	 * 
-	 * @return a list of all the possible moves which will protect the king if
-	 *         it is the piece which is preventing the king from being in check.
-	 */
-	protected Set<Point> kingBlockerMoves() {
-
-		Set<Point> validMoves = new HashSet<Point>();
-		Piece myKing = getKingOfSameColor();
-		// get the direction to king
-		int[] dirOfKing = directionToPiece(myKing);
-		// because this piece is blocking king from threats, reverse the
-		// direction so now the direction points to the challenging piece
-		int[] reverse = reverseDirection(dirOfKing);
-
-		// get the challenging piece
-		Piece challengingPiece = firstPieceInDirection(reverse);
-
-		// Determines if the piece is blocking something horizontally
-		// and generates the moves.
-		int dirX = reverse[0];
-		int dirY = reverse[1];
-
-		boolean stop = false;
-		int checkRow = myKing.row + dirX;
-		int checkCol = myKing.col + dirY;
-
-		// go through all spaces between the blocker piece and the challenging
-		// piece add all positions in between
-		while (!stop) {
-
-			checkRow += dirX;
-			checkCol += dirY;
-			validMoves.add(new Point(checkRow, checkCol));
-			if (checkRow == challengingPiece.row
-					&& checkCol == challengingPiece.col) {
-				stop = true;
-			}
-
-		}
-
-		return validMoves;
-	}
-
 	/**
 	 * Check if a position on board is the opponent's king
 	 * 
@@ -562,7 +210,7 @@ abstract class Piece {
 		// vertical/horizontal
 		boolean checkThreats = false;
 		if (row == this.row && col == this.col && identity == KING) {
-			initializeThreats();
+			myBoard.clearThreats();
 			checkThreats = true;
 		}
 		for (int i = 0; i < 4; i++) {
@@ -686,7 +334,7 @@ abstract class Piece {
 		}
 
 		if (checkThreats) {
-			if (threatsToKing[0] != null) {
+			if (myBoard.threatsToKing[0] != null) {
 
 				return true;
 			}
@@ -707,7 +355,8 @@ abstract class Piece {
 	}
 
 	/**
-	 * Add the given piece to the list of pieces which targets the king
+	 * Add the given piece to the list of pieces of the board which targets the
+	 * king
 	 * 
 	 * @param challengingPiece
 	 *            the piece targeting the king
@@ -715,22 +364,13 @@ abstract class Piece {
 	 *         spare space in the list.
 	 */
 	private boolean addThreat(Piece challengingPiece) {
-		if (threatsToKing[0] != null) {
-			threatsToKing[1] = challengingPiece;
+		if (myBoard.threatsToKing[0] != null) {
+			myBoard.threatsToKing[1] = challengingPiece;
 			return false;
 		} else {
-			threatsToKing[0] = challengingPiece;
+			myBoard.threatsToKing[0] = challengingPiece;
 			return true;
 		}
 	}
 
-	/**
-	 * Initializes the threats array in the piece class. This method will reset
-	 * the value and/or ensure the array has been initialized. This is used in
-	 * the new game method.
-	 */
-	protected void initializeThreats() {
-		threatsToKing = new Piece[2];
-	}
-
 }
@@ -0,0 +1,70 @@
+import java.awt.Graphics;
+import java.awt.Image;
+
+import javax.swing.ImageIcon;
+
+/**
+ * Holds the images of the chess pieces for the user interface. Every image is
+ * loaded the first time it is needed and then shared by all the pieces of the
+ * same identity and color, so the pieces themselves do not carry any image.
+ */
+public class PieceSprites {
+
+	// file names of the images, indexed by the identity of the piece
+	private static final String[] NAMES = { "pawn", "bishop", "knight",
+			"rook", "queen", "king" };
+
+	// loaded icons, indexed by [identity][0 for black, 1 for white]
+	private static final ImageIcon[][] icons = new ImageIcon[NAMES.length][2];
+
+	private PieceSprites() {
+	}
+
+	/**
+	 * Returns the icon of a piece, loading it if it has not been used yet.
+	 *
+	 * @param identity
+	 *            the identity number of the piece
+	 * @param color
+	 *            the color of the piece
+	 * @return the icon of the piece
+	 */
+	public static synchronized ImageIcon getIcon(int identity, boolean color) {
+		int side = color ? 1 : 0;
+		if (icons[identity][side] == null) {
+			icons[identity][side] = new ImageIcon("image\\" + NAMES[identity]
+					+ (color ? "w" : "b") + ".gif");
+		}
+		return icons[identity][side];
+	}
+
+	/**
+	 * Returns the image of a piece, loading it if it has not been used yet.
+	 *
+	 * @param identity
+	 *            the identity number of the piece
+	 * @param color
+	 *            the color of the piece
+	 * @return the image of the piece
+	 */
+	public static Image getImage(int identity, boolean color) {
+		return getIcon(identity, color).getImage();
+	}
+
+	/**
+	 * Draw the image of a piece on the screen
+	 *
+	 * @param g
+	 *            graphics context
+	 * @param p
+	 *            the piece to draw
+	 * @param x
+	 *            the x position of the image
+	 * @param y
+	 *            the y position of the image
+	 */
+	public static void draw(Graphics g, Piece p, int x, int y) {
+		g.drawImage(getImage(p.identity, p.color), x, y, null);
+	}
+
+}
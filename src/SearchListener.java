@@ -0,0 +1,25 @@
+/**
+ * An object told about the progress of a search, such as a front end showing
+ * how the AI is thinking.
+ */
+public interface SearchListener {
+
+	/**
+	 * Called by the thread calling getBestMove() each time an iteration of
+	 * the search is completed.
+	 * 
+	 * @param depth
+	 *            the depth of the iteration
+	 * @param score
+	 *            the score of the best move for the side to move, MATE less
+	 *            the plies to a checkmate for a winning side
+	 * @param nodes
+	 *            the positions searched so far by all the threads
+	 * @param time
+	 *            the time since the search started in milliseconds
+	 * @param pv
+	 *            the moves expected to be played, the best move first
+	 */
+	void iterationDone(int depth, int score, long nodes, long time, int[] pv);
+
+}
@@ -0,0 +1,714 @@
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The state of one thread searching for an AI: its own copy of the position,
+ * on which moves are made and taken back, the move lists of each ply and the
+ * tables used to order the moves. A Searcher is only used by one thread at a
+ * time, the threads share nothing but the AI, its transposition table and
+ * the nodes split among them.
+ */
+class Searcher {
+
+	// order of the moves: the move of the transposition table, captures that
+	// do not lose material, killer moves, losing captures, then the other
+	// moves by their history
+	private static final int HASH_MOVE_SCORE = 1 << 30;
+	private static final int CAPTURE_SCORE = 1 << 28;
+	private static final int KILLER_SCORE = 1 << 26;
+	private static final int LOSING_CAPTURE_SCORE = 1 << 24;
+	// history scores are halved when one reaches this
+	private static final int HISTORY_LIMIT = 1 << 20;
+	// the least depth left at which the moves of a node are split among the
+	// threads, shallower nodes are too small to be worth a task
+	private static final int SPLIT_DEPTH = 3;
+	// the least depth left at which moves are pruned or reduced
+	private static final int NULL_MOVE_DEPTH = 3;
+	private static final int REDUCTION_DEPTH = 3;
+	// the moves searched at full depth before the others can be reduced
+	private static final int FULL_DEPTH_MOVES = 3;
+
+	private AI ai;
+	// the position searched, moves are made and taken back on it
+	BitBoard position;
+	private TranspositionTable table;
+	// the pawn structures evaluated by this Searcher
+	PawnTable pawnTable;
+	// the scores of the positions evaluated, shared by the threads, null if
+	// none is used
+	private EvalCache evalCache;
+	// the packed moves generated at each ply of the search
+	private int[][] moveLists;
+	// the order scores of the moves in moveLists
+	private int[][] moveScores;
+	// two quiet moves per ply that caused a cut-off
+	private int[][] killers;
+	// how often a quiet move caused a cut-off, by [side][from][to]
+	private int[][][] history;
+	// the plies at which a null move was made
+	private boolean[] nullMoves;
+	// the number of positions searched
+	long nodes;
+	// the evaluations found in the cache and the ones computed
+	long evalHits;
+	long evalMisses;
+	// true while helping the main thread of a Lazy SMP search
+	boolean helper;
+	// true while searching a move of the first ply split among the threads
+	boolean rootMove;
+	// the split node whose move this Searcher is searching, null if none
+	private SplitPoint split;
+
+	/**
+	 * Creates a Searcher for an AI, all the memory used by the search is
+	 * allocated here.
+	 * 
+	 * @param ai
+	 *            the AI the search is done for
+	 */
+	Searcher(AI ai) {
+		this.ai = ai;
+		position = new BitBoard();
+		moveLists = new int[AI.MAX_PLY + 1][AI.MAX_MOVES];
+		moveScores = new int[AI.MAX_PLY + 1][AI.MAX_MOVES];
+		killers = new int[AI.MAX_PLY + 1][2];
+		history = new int[2][64][64];
+		nullMoves = new boolean[AI.MAX_PLY + 1];
+		pawnTable = new PawnTable(AI.getPawnHashSize());
+	}
+
+	/**
+	 * Prepares a new search.
+	 * 
+	 * @param root
+	 *            the position to search, copied
+	 * @param t
+	 *            the transposition table to use
+	 */
+	void startSearch(BitBoard root, TranspositionTable t) {
+		position.copyFrom(root);
+		table = t;
+		evalCache = ai.getEvalCache();
+	}
+
+	/**
+	 * Searches the position in negamax form: the score is always seen from
+	 * the side to move, and the score of a move is the negated score of the
+	 * position after it.
+	 * 
+	 * @param depth
+	 *            the number of plies left to search
+	 * @param ply
+	 *            the level that it is currently searching
+	 * @param alpha
+	 *            the lower bound for the possible score to be considered
+	 * @param beta
+	 *            the upper bound for the possible score to be considered
+	 * @return the score of the position for the side to move
+	 */
+	public int alphaBetaMinimax(int depth, int ply, int alpha, int beta) {
+
+		BitBoard b = position;
+
+		if (countNode()) {
+			return 0;
+		}
+
+		// A position repeated or past the fifty move rule is a draw
+		if (ply > 0 && b.isDraw()) {
+			return 0;
+		}
+
+		// If reached the node, resolves the captures before evaluating
+		if (depth <= 0) {
+			return quiescence(ply, alpha, beta);
+		}
+
+		// A transposed position may have been searched deep enough already
+		long key = b.hash();
+		long entry = table.probe(key);
+		if (entry != 0 && TranspositionTable.depth(entry) >= depth) {
+			int score = fromTable(TranspositionTable.score(entry), ply);
+			int bound = TranspositionTable.bound(entry);
+			if (bound == TranspositionTable.EXACT
+					|| (bound == TranspositionTable.LOWER && score >= beta)
+					|| (bound == TranspositionTable.UPPER && score <= alpha)) {
+				return score;
+			}
+		}
+
+		// If the side to move is still winning after passing its turn, the
+		// position is too good to be reached and is not searched. Not done
+		// when in check, after another pass, in a principal variation node,
+		// or with only pawns left, where passing could be the best move.
+		boolean inCheck = b.inCheck(b.sideToMove);
+		nullMoves[ply] = false;
+		if (AI.isNullMovePruning() && depth >= NULL_MOVE_DEPTH && !inCheck
+				&& !nullMoves[ply - 1] && beta - alpha == 1
+				&& b.hasNonPawnMaterial(b.sideToMove)
+				&& ply < AI.MAX_PLY - 1 && evaluate(b) >= beta) {
+			nullMoves[ply] = true;
+			int reduced = depth - 1 - AI.getNullMoveReduction();
+			b.makeNullMove();
+			int score = -alphaBetaMinimax(reduced, ply + 1, -beta, -beta + 1);
+			b.unmakeNullMove();
+			nullMoves[ply] = false;
+			if (stopped()) {
+				return 0;
+			}
+			if (score >= beta) {
+				// a mate found after a pass is not proven
+				return score >= AI.MATE - AI.MAX_PLY ? beta : score;
+			}
+		}
+
+		int hashMove = PackedMove.NONE;
+		if (entry != 0) {
+			hashMove = TranspositionTable.move(entry);
+		}
+
+		int[] possibleMoves = moveLists[ply];
+		int count = b.generateMoves(possibleMoves, 0);
+		scoreMoves(ply, count, hashMove);
+		int originalAlpha = alpha;
+		int bestScore = -AI.INFINITY;
+		int bestPacked = PackedMove.NONE;
+		int searched = 0;
+
+		// For each possible Move, make the Move and take it back
+		for (int i = 0; i < count; i++) {
+			// Once the first move is searched, the others can be shared with
+			// the idle threads (young brothers wait)
+			if (bestPacked != PackedMove.NONE && depth >= SPLIT_DEPTH
+					&& i < count - 1 && ai.isSplitting()
+					&& ForkJoinTask.inForkJoinPool()) {
+				SplitPoint sp = new SplitPoint(split, ply, depth, inCheck,
+						alpha, beta, bestScore, bestPacked);
+				searchSplit(sp, i, count);
+				if (stopped()) {
+					return 0;
+				}
+				bestScore = sp.bestScore;
+				bestPacked = sp.bestMove;
+				break;
+			}
+
+			int move = nextMove(ply, i, count);
+			b.makeMove(move);
+			// Call the method recursively, after the first move with a null
+			// window which only proves the move is not better than the best
+			// so far, and again with the full window if it is. Late quiet
+			// moves are first searched less deep, and at full depth if they
+			// beat the best move.
+			int result;
+			if (searched == 0) {
+				result = -alphaBetaMinimax(depth - 1, ply + 1, -beta, -alpha);
+			} else {
+				int reduction = reduction(depth, searched, inCheck, move,
+						moveScores[ply][i]);
+				result = -alphaBetaMinimax(depth - 1 - reduction, ply + 1,
+						-alpha - 1, -alpha);
+				if (result > alpha && reduction > 0) {
+					result = -alphaBetaMinimax(depth - 1, ply + 1, -alpha - 1,
+							-alpha);
+				}
+				if (result > alpha && result < beta) {
+					result = -alphaBetaMinimax(depth - 1, ply + 1, -beta,
+							-alpha);
+				}
+			}
+			b.unmakeMove(move);
+			searched++;
+			if (stopped()) {
+				return 0;
+			}
+
+			if (result > bestScore) {
+				bestScore = result;
+				bestPacked = move;
+				// If the score larger than the lower bound so far, store it
+				if (result > alpha) {
+					alpha = result;
+					// If cut-off is possible, the opponent avoids this node
+					if (alpha >= beta) {
+						if (!PackedMove.isCapture(move)
+								&& !PackedMove.isPromotion(move)) {
+							updateQuietCutoff(move, ply, depth);
+						}
+						break;
+					}
+				}
+			}
+		}
+
+		// Checkmate or stalemate
+		if (bestPacked == PackedMove.NONE) {
+			return inCheck ? -AI.MATE + ply : 0;
+		}
+
+		int bound;
+		if (bestScore >= beta) {
+			bound = TranspositionTable.LOWER;
+		} else if (bestScore > originalAlpha) {
+			bound = TranspositionTable.EXACT;
+		} else {
+			bound = TranspositionTable.UPPER;
+		}
+		table.store(key, bestPacked, toTable(bestScore, ply), depth, bound);
+		return bestScore;
+	}
+
+	/**
+	 * Finds how many plies less deep a move is searched first. Late quiet
+	 * moves are reduced, unless the side that made them was in check or they
+	 * give check. The move has to be made on the position already.
+	 * 
+	 * @param depth
+	 *            the depth left at the node of the move
+	 * @param searched
+	 *            the number of moves of the node searched before it
+	 * @param inCheck
+	 *            true if the side that made the move was in check
+	 * @param move
+	 *            the packed move
+	 * @param order
+	 *            the order score of the move
+	 * @return the reduction in plies, 0 for none
+	 */
+	private int reduction(int depth, int searched, boolean inCheck, int move,
+			int order) {
+		if (AI.isLateMoveReductions() && depth >= REDUCTION_DEPTH
+				&& searched >= FULL_DEPTH_MOVES && !inCheck
+				&& order < KILLER_SCORE && !PackedMove.isCapture(move)
+				&& !PackedMove.isPromotion(move)
+				&& !position.inCheck(position.sideToMove)) {
+			return AI.lateMoveReduction(depth, searched);
+		}
+		return 0;
+	}
+
+	/**
+	 * Searches the remaining moves of a node in parallel, one task per move,
+	 * and waits for them. The thread waiting for the tasks runs some of them
+	 * itself, each task taking a free Searcher of the AI.
+	 * 
+	 * @param sp
+	 *            the node being split
+	 * @param index
+	 *            the index of the first move not searched yet
+	 * @param count
+	 *            the number of moves of the node
+	 */
+	private void searchSplit(SplitPoint sp, int index, int count) {
+		int ply = sp.ply;
+		SplitTask[] tasks = new SplitTask[count - index];
+		for (int i = index; i < count; i++) {
+			int move = nextMove(ply, i, count);
+			tasks[i - index] = new SplitTask(sp, move, i, moveScores[ply][i]);
+		}
+		ForkJoinTask.invokeAll(tasks);
+	}
+
+	/**
+	 * Searches one move of a split node on a copy of the position of the
+	 * Searcher that split it, and gives the score to the split node.
+	 * 
+	 * @param sp
+	 *            the split node
+	 * @param parent
+	 *            the Searcher that split the node, waiting for its tasks
+	 * @param move
+	 *            the packed move
+	 * @param searched
+	 *            the number of moves of the node ordered before it
+	 * @param order
+	 *            the order score of the move
+	 */
+	private void searchSplitMove(SplitPoint sp, Searcher parent, int move,
+			int searched, int order) {
+		split = sp;
+		nullMoves[sp.ply] = false;
+		try {
+			if (stopped()) {
+				return;
+			}
+			startSearch(parent.position, parent.table);
+			position.makeMove(move);
+			int alpha = sp.alpha;
+			// reduced as the move would be by the loop of the node
+			int reduction = reduction(sp.depth, searched, sp.inCheck, move,
+					order);
+			int score = -alphaBetaMinimax(sp.depth - 1 - reduction,
+					sp.ply + 1, -alpha - 1, -alpha);
+			if (score > alpha && reduction > 0 && !stopped()) {
+				score = -alphaBetaMinimax(sp.depth - 1, sp.ply + 1,
+						-alpha - 1, -alpha);
+			}
+			if (score > alpha && score < sp.beta && !stopped()) {
+				score = -alphaBetaMinimax(sp.depth - 1, sp.ply + 1, -sp.beta,
+						-alpha);
+			}
+			if (!stopped()) {
+				sp.offer(score, move);
+			}
+		} finally {
+			split = null;
+		}
+	}
+
+	/**
+	 * Searches only the captures and promotions until the position is quiet,
+	 * so that the evaluation does not miss a piece about to be taken. The
+	 * side to move may also stand on the evaluation instead of capturing.
+	 * Captures that lose material by static exchange evaluation are skipped.
+	 * When in check, every move is searched.
+	 * 
+	 * @param ply
+	 *            the level that it is currently searching
+	 * @param alpha
+	 *            the lower bound for the possible score to be considered
+	 * @param beta
+	 *            the upper bound for the possible score to be considered
+	 * @return the score of the position for the side to move
+	 */
+	private int quiescence(int ply, int alpha, int beta) {
+		BitBoard b = position;
+
+		if (countNode()) {
+			return 0;
+		}
+
+		boolean inCheck = b.inCheck(b.sideToMove);
+		int bestScore = -AI.INFINITY;
+		if (!inCheck || ply >= AI.MAX_PLY) {
+			bestScore = evaluate(b);
+			if (bestScore >= beta || ply >= AI.MAX_PLY) {
+				return bestScore;
+			}
+			if (bestScore > alpha) {
+				alpha = bestScore;
+			}
+		}
+
+		int[] possibleMoves = moveLists[ply];
+		int count;
+		if (inCheck) {
+			count = b.generateMoves(possibleMoves, 0);
+		} else {
+			count = b.generateCaptures(possibleMoves, 0);
+		}
+		// Checkmate
+		if (inCheck && count == 0) {
+			return -AI.MATE + ply;
+		}
+		scoreMoves(ply, count, PackedMove.NONE);
+
+		for (int i = 0; i < count; i++) {
+			int move = nextMove(ply, i, count);
+			if (!inCheck && b.see(move) < 0) {
+				continue;
+			}
+			b.makeMove(move);
+			int result = -quiescence(ply + 1, -beta, -alpha);
+			b.unmakeMove(move);
+			if (stopped()) {
+				return 0;
+			}
+
+			if (result > bestScore) {
+				bestScore = result;
+				if (result > alpha) {
+					alpha = result;
+					if (alpha >= beta) {
+						break;
+					}
+				}
+			}
+		}
+
+		return bestScore;
+	}
+
+	/**
+	 * Evaluates a position, looking up the score in the cache first.
+	 * 
+	 * @return the score for the side to move
+	 */
+	private int evaluate(BitBoard b) {
+		if (evalCache == null) {
+			return b.evaluate(pawnTable);
+		}
+		long key = b.hash();
+		int score = evalCache.probe(key);
+		if (score != EvalCache.MISS) {
+			evalHits++;
+			return score;
+		}
+		evalMisses++;
+		score = b.evaluate(pawnTable);
+		evalCache.store(key, score);
+		return score;
+	}
+
+	/**
+	 * Counts a node and checks the clock from time to time.
+	 * 
+	 * @return true if the search has to stop
+	 */
+	private boolean countNode() {
+		if ((++nodes & 1023) == 0) {
+			ai.checkClock();
+		}
+		return stopped();
+	}
+
+	/**
+	 * Determines if the search has to stop.
+	 */
+	boolean stopped() {
+		return ai.isStopped() || (helper && ai.areHelpersStopped())
+				|| (rootMove && ai.isRootCutOff())
+				|| (split != null && split.isAborted());
+	}
+
+	/**
+	 * Gives each generated move of a ply a score so that the moves most
+	 * likely to cause a cut-off are searched first. Captures are ordered by
+	 * the most valuable victim, then the least valuable attacker, and those
+	 * losing material by the static exchange evaluation come after the
+	 * killer moves.
+	 * 
+	 * @param ply
+	 *            the ply of the moves
+	 * @param count
+	 *            the number of moves
+	 * @param hashMove
+	 *            the best move found for the position before, or
+	 *            PackedMove.NONE
+	 */
+	private void scoreMoves(int ply, int count, int hashMove) {
+		int[] moves = moveLists[ply];
+		int[] scores = moveScores[ply];
+		int[] squares = position.squares;
+		int[][] sideHistory = history[position.sideToMove];
+
+		for (int i = 0; i < count; i++) {
+			int move = moves[i];
+			int from = PackedMove.from(move);
+			int to = PackedMove.to(move);
+			if (move == hashMove) {
+				scores[i] = HASH_MOVE_SCORE;
+			} else if (PackedMove.isCapture(move)) {
+				int victim = BitBoard.PAWN;
+				if (PackedMove.flags(move) != PackedMove.EN_PASSANT) {
+					victim = BitBoard.identityOf(squares[to]);
+				}
+				scores[i] = Board.pieceOwn[victim] * 8
+						- BitBoard.identityOf(squares[from]);
+				if (PackedMove.isPromotion(move)) {
+					scores[i] += PackedMove.promotion(move);
+				}
+				if (position.see(move) < 0) {
+					scores[i] += LOSING_CAPTURE_SCORE;
+				} else {
+					scores[i] += CAPTURE_SCORE;
+				}
+			} else if (PackedMove.isPromotion(move)
+					&& PackedMove.promotion(move) == BitBoard.QUEEN) {
+				// as good as winning a pawn at least
+				scores[i] = CAPTURE_SCORE;
+			} else if (move == killers[ply][0]) {
+				scores[i] = KILLER_SCORE + 1;
+			} else if (move == killers[ply][1]) {
+				scores[i] = KILLER_SCORE;
+			} else {
+				scores[i] = sideHistory[from][to];
+			}
+		}
+	}
+
+	/**
+	 * Finds the move with the highest order score among the moves not
+	 * searched yet and swaps it to the given index.
+	 * 
+	 * @param ply
+	 *            the ply of the moves
+	 * @param index
+	 *            the index of the next move to search
+	 * @param count
+	 *            the number of moves
+	 * @return the next move to search
+	 */
+	private int nextMove(int ply, int index, int count) {
+		int[] moves = moveLists[ply];
+		int[] scores = moveScores[ply];
+		int best = index;
+		for (int i = index + 1; i < count; i++) {
+			if (scores[i] > scores[best]) {
+				best = i;
+			}
+		}
+		int move = moves[best];
+		int score = scores[best];
+		moves[best] = moves[index];
+		scores[best] = scores[index];
+		moves[index] = move;
+		scores[index] = score;
+		return move;
+	}
+
+	/**
+	 * Remembers a quiet move that caused a cut-off, as a killer move of its
+	 * ply and in the history of its side.
+	 * 
+	 * @param move
+	 *            the packed move
+	 * @param ply
+	 *            the ply of the move
+	 * @param depth
+	 *            the depth left at the ply, deeper cut-offs count more
+	 */
+	private void updateQuietCutoff(int move, int ply, int depth) {
+		if (killers[ply][0] != move) {
+			killers[ply][1] = killers[ply][0];
+			killers[ply][0] = move;
+		}
+
+		int[][] sideHistory = history[position.sideToMove];
+		int from = PackedMove.from(move);
+		int to = PackedMove.to(move);
+		sideHistory[from][to] += depth * depth;
+		if (sideHistory[from][to] >= HISTORY_LIMIT) {
+			for (int side = 0; side < 2; side++) {
+				for (int i = 0; i < 64; i++) {
+					for (int j = 0; j < 64; j++) {
+						history[side][i][j] /= 2;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Converts a score to be stored in the transposition table. Mate scores
+	 * count the plies from the root, the table counts them from the stored
+	 * position so that they stay right when it is reached at another ply.
+	 */
+	private static int toTable(int score, int ply) {
+		if (score > AI.MATE - AI.MAX_PLY) {
+			return score + ply;
+		}
+		if (score < -AI.MATE + AI.MAX_PLY) {
+			return score - ply;
+		}
+		return score;
+	}
+
+	/**
+	 * Converts a score read from the transposition table back to the ply it
+	 * is found at.
+	 */
+	private static int fromTable(int score, int ply) {
+		if (score > AI.MATE - AI.MAX_PLY) {
+			return score - ply;
+		}
+		if (score < -AI.MATE + AI.MAX_PLY) {
+			return score + ply;
+		}
+		return score;
+	}
+
+	/**
+	 * The search of one move of a split node by a thread of the pool.
+	 */
+	private class SplitTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private SplitPoint sp;
+		private int move;
+		// the number of moves of the node ordered before this one, and its
+		// order score, which decide its reduction
+		private int searched;
+		private int order;
+
+		SplitTask(SplitPoint sp, int move, int searched, int order) {
+			this.sp = sp;
+			this.move = move;
+			this.searched = searched;
+			this.order = order;
+		}
+
+		@Override
+		protected void compute() {
+			Searcher s = ai.acquireSearcher();
+			try {
+				s.searchSplitMove(sp, Searcher.this, move, searched, order);
+			} finally {
+				ai.releaseSearcher(s);
+			}
+		}
+	}
+
+	/**
+	 * A node whose moves are searched by several threads. The threads share
+	 * its bounds and best score, and stop as soon as one of them causes a
+	 * cut-off or the node they are part of is itself cut off.
+	 */
+	private static class SplitPoint {
+		// the split node containing this one, null if none
+		private SplitPoint parent;
+		private int ply;
+		private int depth;
+		// true if the side to move at the node is in check
+		private boolean inCheck;
+		private int beta;
+		private volatile int alpha;
+		private volatile int bestScore;
+		private volatile int bestMove;
+		private volatile boolean aborted;
+
+		SplitPoint(SplitPoint parent, int ply, int depth, boolean inCheck,
+				int alpha, int beta, int bestScore, int bestMove) {
+			this.parent = parent;
+			this.ply = ply;
+			this.depth = depth;
+			this.inCheck = inCheck;
+			this.alpha = alpha;
+			this.beta = beta;
+			this.bestScore = bestScore;
+			this.bestMove = bestMove;
+		}
+
+		/**
+		 * Gives the score of a move, which becomes the best move if its score
+		 * is higher than the best score so far.
+		 */
+		synchronized void offer(int score, int move) {
+			if (score > bestScore) {
+				bestScore = score;
+				bestMove = move;
+				if (score > alpha) {
+					alpha = score;
+					// the other moves do not have to be searched
+					if (score >= beta) {
+						aborted = true;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Determines if this node or a node containing it was cut off.
+		 */
+		boolean isAborted() {
+			for (SplitPoint sp = this; sp != null; sp = sp.parent) {
+				if (sp.aborted) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+}
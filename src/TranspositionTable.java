@@ -0,0 +1,170 @@
+/**
+ * A table of the results of positions already searched, so that a position
+ * reached again through another order of moves does not have to be searched
+ * again. The table is a long array of buckets of four entries, each entry
+ * being two longs: the key of the position exclusive or the data, and the
+ * data. A reader only accepts an entry if the two longs match, so several
+ * threads can read and write the table at the same time without locks: an
+ * entry half written by another thread is seen as a miss.
+ */
+public class TranspositionTable {
+
+	// kinds of scores
+	public static final int EXACT = 0;
+	// the score is at least the stored one (the search failed high)
+	public static final int LOWER = 1;
+	// the score is at most the stored one (the search failed low)
+	public static final int UPPER = 2;
+
+	// entries in a bucket, 4 entries of 16 bytes fill a cache line
+	private static final int BUCKET = 4;
+	// added to scores so that they are stored as positive numbers
+	private static final int SCORE_OFFSET = 1 << 21;
+
+	private long[] table;
+	private int bucketMask;
+	private int age;
+
+	/**
+	 * Creates an empty table.
+	 * 
+	 * @param megabytes
+	 *            the size of the table, rounded down to a power of two
+	 */
+	public TranspositionTable(int megabytes) {
+		resize(megabytes);
+	}
+
+	/**
+	 * Changes the size of the table, which empties it.
+	 * 
+	 * @param megabytes
+	 *            the size of the table, rounded down to a power of two
+	 */
+	public synchronized void resize(int megabytes) {
+		long bytes = Math.max(megabytes, 1) * 1024L * 1024L;
+		int buckets = Integer.highestOneBit((int) Math.min(bytes
+				/ (BUCKET * 16), 1 << 26));
+		table = new long[buckets * BUCKET * 2];
+		bucketMask = buckets - 1;
+		age = 0;
+	}
+
+	/**
+	 * Removes all the entries.
+	 */
+	public synchronized void clear() {
+		java.util.Arrays.fill(table, 0);
+		age = 0;
+	}
+
+	/**
+	 * Starts a new search. Entries of older searches are replaced first.
+	 */
+	public void newSearch() {
+		age = (age + 1) & 255;
+	}
+
+	/**
+	 * Looks up a position.
+	 * 
+	 * @param key
+	 *            the Zobrist key of the position
+	 * @return the data stored for the position, or 0 if there is none
+	 */
+	public long probe(long key) {
+		long[] t = table;
+		int index = ((int) key & bucketMask) * BUCKET * 2;
+		for (int i = index; i < index + BUCKET * 2; i += 2) {
+			long data = t[i + 1];
+			if ((t[i] ^ data) == key && data != 0) {
+				return data;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Stores the result of a search. It replaces the entry of the same
+	 * position, or else the entry of the bucket that is the least useful,
+	 * giving priority to deep and recent searches.
+	 * 
+	 * @param key
+	 *            the Zobrist key of the position
+	 * @param move
+	 *            the best packed move, PackedMove.NONE if unknown
+	 * @param score
+	 *            the score of the position
+	 * @param depth
+	 *            the depth the position was searched to
+	 * @param bound
+	 *            EXACT, LOWER or UPPER
+	 */
+	public void store(long key, int move, int score, int depth, int bound) {
+		long[] t = table;
+		int index = ((int) key & bucketMask) * BUCKET * 2;
+		int replace = index;
+		int worst = Integer.MAX_VALUE;
+
+		for (int i = index; i < index + BUCKET * 2; i += 2) {
+			long data = t[i + 1];
+			if ((t[i] ^ data) == key) {
+				// keep the known best move if the new search has none
+				if (move == PackedMove.NONE) {
+					move = move(data);
+				}
+				replace = i;
+				break;
+			}
+			// each search of age counts as much as 8 plies of depth
+			int value = depth(data) - 8 * ((age - age(data)) & 255);
+			if (value < worst) {
+				worst = value;
+				replace = i;
+			}
+		}
+
+		long data = (move & 0xFFFFL)
+				| ((long) (score + SCORE_OFFSET) << 16)
+				| ((long) (depth & 255) << 38) | ((long) bound << 46)
+				| ((long) age << 48);
+		t[replace] = key ^ data;
+		t[replace + 1] = data;
+	}
+
+	/**
+	 * Returns the best packed move of an entry.
+	 */
+	public static int move(long data) {
+		return (int) (data & 0xFFFF);
+	}
+
+	/**
+	 * Returns the score of an entry.
+	 */
+	public static int score(long data) {
+		return (int) ((data >>> 16) & 0x3FFFFF) - SCORE_OFFSET;
+	}
+
+	/**
+	 * Returns the depth of an entry.
+	 */
+	public static int depth(long data) {
+		return (int) ((data >>> 38) & 255);
+	}
+
+	/**
+	 * Returns the kind of score of an entry: EXACT, LOWER or UPPER.
+	 */
+	public static int bound(long data) {
+		return (int) ((data >>> 46) & 3);
+	}
+
+	/**
+	 * Returns the search the entry was stored in.
+	 */
+	private static int age(long data) {
+		return (int) ((data >>> 48) & 255);
+	}
+
+}
@@ -0,0 +1,599 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Tunes the values of Evaluation on positions labelled with the result of the
+ * game they were played in (Texel's tuning method). The evaluation of a
+ * position is turned into an expected result by a sigmoid, and the values are
+ * changed by batch gradient descent so that the mean squared difference with
+ * the actual results gets as small as possible.
+ * 
+ * The evaluation changes in proportion to each value, but for rounding. So
+ * the change of the evaluation of each position by each value is measured
+ * once, by evaluating all the positions with one value changed at a time, and
+ * the descent works out the evaluations from these changes. The positions are
+ * evaluated again from time to time to check the error, and the values are
+ * written to a file the engine loads.
+ * 
+ * The file of positions has one position in Forsyth-Edwards Notation on each
+ * line followed by the result for white: 1-0, 0-1 or 1/2-1/2, which may be
+ * in brackets or quotes, or 1, 0 or 0.5 in brackets or quotes, such as this
+ * line:
+ * <br>
+ * rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - c9 "1/2-1/2";
+ * <br>
+ * A bare 1, 0 or 0.5 is only taken as the result when it ends the line right
+ * after the position or after its two move counters, so that the counters
+ * are never read as a result.
+ * 
+ * The changes of the evaluations take about 1 KB of memory for each
+ * position, so a million positions need a heap of about 1 GB, set with the
+ * -Xmx option of java.
+ * 
+ * Usage: java Tuner [-threads n] [-epochs n] [-rate r] [-load file] [-out
+ * file] positions
+ */
+public class Tuner {
+
+	// the change of a value when its changes of the evaluations are
+	// measured, the full phase so that blending the middle game and endgame
+	// scores does not round them away
+	private static final int DELTA = Evaluation.MAX_PHASE;
+	// the arrays of values that are not tuned, as the evaluation does not
+	// change in proportion to them: the weights pick an entry of KING_DANGER,
+	// and the averages are multiplied by the mobility values
+	private static final String[] FIXED = { "KING_ATTACK_WEIGHTS",
+			"MOBILITY_AVERAGE" };
+	// the number of positions evaluated by one task
+	private static final int BATCH_SIZE = 16384;
+	// the number of steps between two checks of the error
+	private static final int CHECK_INTERVAL = 50;
+	// the decay of the averages of the gradient and of its square, which
+	// scale the step of each value (Adam)
+	private static final double BETA1 = 0.9;
+	private static final double BETA2 = 0.999;
+	private static final double EPSILON = 1e-8;
+
+	private ForkJoinPool pool;
+	private List<Batch> batches = new ArrayList<Batch>();
+	private int positionCount;
+
+	// the values the changes of the evaluations were measured from, and the
+	// values being tuned
+	private int[] base;
+	private double[] values;
+	// set for the values that are tuned
+	private boolean[] tuned;
+	// the scale of the evaluations in the sigmoid
+	private double scale = 1;
+
+	/**
+	 * Creates a tuner without positions.
+	 * 
+	 * @param threads
+	 *            the number of threads evaluating the positions
+	 */
+	public Tuner(int threads) {
+		pool = new ForkJoinPool(Math.max(threads, 1));
+		base = Evaluation.getParameters();
+		values = new double[base.length];
+		tuned = new boolean[base.length];
+		for (int i = 0; i < base.length; i++) {
+			values[i] = base[i];
+			tuned[i] = true;
+			for (int j = 0; j < FIXED.length; j++) {
+				if (Evaluation.parameterName(i).startsWith(FIXED[j] + "[")) {
+					tuned[i] = false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the positions of a file. The lines without a position or a
+	 * result are skipped.
+	 * 
+	 * @param path
+	 *            the file of positions
+	 * @return the number of lines skipped
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public int read(String path) throws IOException {
+		int skipped = 0;
+		BufferedReader in = new BufferedReader(new FileReader(path));
+		try {
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (!add(line.trim())) {
+					skipped++;
+				}
+			}
+		} finally {
+			in.close();
+		}
+		return skipped;
+	}
+
+	/**
+	 * Adds a position and its result from a line of the file.
+	 * 
+	 * @return false if the line has no valid position or result
+	 */
+	private boolean add(String line) {
+		String[] tokens = line.split("\\s+");
+		if (tokens.length < 5) {
+			return false;
+		}
+		// the counters and other fields are not needed to evaluate
+		double result = -1;
+		for (int i = tokens.length - 1; i >= 4 && result < 0; i--) {
+			result = parseResult(tokens[i], false);
+		}
+		if (result < 0) {
+			// a bare number right after the position and its counters, if any
+			int last = tokens.length - 1;
+			if (last == 4
+					|| (last == 6 && tokens[4].matches("\\d+") && tokens[5]
+							.matches("\\d+"))) {
+				result = parseResult(tokens[last], true);
+			}
+		}
+		if (result < 0) {
+			return false;
+		}
+
+		BitBoard b;
+		try {
+			b = new BitBoard(tokens[0] + " " + tokens[1] + " " + tokens[2]
+					+ " " + tokens[3]);
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+		if (Long.bitCount(b.pieces[BitBoard.KING]) != 1
+				|| Long.bitCount(b.pieces[6 + BitBoard.KING]) != 1) {
+			return false;
+		}
+
+		if (batches.isEmpty()
+				|| batches.get(batches.size() - 1).count == BATCH_SIZE) {
+			batches.add(new Batch());
+		}
+		batches.get(batches.size() - 1).add(b, (float) result);
+		positionCount++;
+		return true;
+	}
+
+	/**
+	 * Reads a game result for white.
+	 * 
+	 * @param word
+	 *            the word to read
+	 * @param bare
+	 *            true if a number that is not in brackets or quotes may be a
+	 *            result
+	 * @return 1 for a win, 0.5 for a draw, 0 for a loss and -1 if the word is
+	 *         not a result
+	 */
+	private static double parseResult(String word, boolean bare) {
+		String marked = word.replaceAll(";$", "");
+		String result = marked.replaceAll("[\\[\\]\"]", "");
+		if (result.equals("1-0")) {
+			return 1;
+		} else if (result.equals("0-1")) {
+			return 0;
+		} else if (result.equals("1/2-1/2")) {
+			return 0.5;
+		} else if (!bare && result.equals(marked)) {
+			return -1;
+		}
+		try {
+			double value = Double.parseDouble(result);
+			return value >= 0 && value <= 1 ? value : -1;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Evaluates all the positions with the current values, and measures how
+	 * much each value changes the evaluations.
+	 */
+	public void measure() {
+		setValues();
+		for (int i = 0; i < base.length; i++) {
+			if (tuned[i]) {
+				int[] changed = base.clone();
+				changed[i] += DELTA;
+				Evaluation.setParameters(changed);
+				runAll(i);
+			}
+		}
+		Evaluation.setParameters(base);
+	}
+
+	/**
+	 * Makes the values being tuned the values of Evaluation, rounded, and
+	 * evaluates all the positions with them again.
+	 */
+	private void setValues() {
+		for (int i = 0; i < base.length; i++) {
+			base[i] = (int) Math.round(values[i]);
+		}
+		Evaluation.setParameters(base);
+		runAll(-1);
+	}
+
+	/**
+	 * Evaluates all the positions, or measures the changes of their
+	 * evaluations by a value, on all the threads.
+	 * 
+	 * @param value
+	 *            the index of the value changed by DELTA, -1 to evaluate
+	 *            with no value changed
+	 */
+	private void runAll(final int value) {
+		List<Callable<Double>> tasks = new ArrayList<Callable<Double>>();
+		for (final Batch batch : batches) {
+			tasks.add(new Callable<Double>() {
+
+				public Double call() {
+					if (value < 0) {
+						batch.evaluate();
+					} else {
+						batch.measure(value);
+					}
+					return 0.0;
+				}
+			});
+		}
+		sum(tasks);
+	}
+
+	/**
+	 * Finds the mean squared error of the values being tuned, and its
+	 * gradient.
+	 * 
+	 * @param gradient
+	 *            the array the gradient is written to, null if it is not
+	 *            needed
+	 * @return the error
+	 */
+	public double error(final double[] gradient) {
+		final double[] change = new double[values.length];
+		for (int i = 0; i < values.length; i++) {
+			change[i] = (values[i] - base[i]) / DELTA;
+		}
+
+		List<Callable<Double>> tasks = new ArrayList<Callable<Double>>();
+		for (final Batch batch : batches) {
+			tasks.add(new Callable<Double>() {
+
+				public Double call() {
+					return batch.error(change, scale, gradient != null);
+				}
+			});
+		}
+		double error = sum(tasks) / positionCount;
+
+		if (gradient != null) {
+			// the derivative of the sigmoid brings in the scale and ln(10) /
+			// 400, and the square the factor 2
+			double factor = 2 * scale * Math.log(10) / 400 / positionCount
+					/ DELTA;
+			Arrays.fill(gradient, 0);
+			for (Batch batch : batches) {
+				for (int i = 0; i < gradient.length; i++) {
+					gradient[i] += batch.gradient[i] * factor;
+				}
+			}
+		}
+		return error;
+	}
+
+	/**
+	 * Runs tasks on the threads and adds up what they return.
+	 */
+	private double sum(List<Callable<Double>> tasks) {
+		double sum = 0;
+		for (Future<Double> f : pool.invokeAll(tasks)) {
+			try {
+				sum += f.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Finds the scale of the evaluations that makes the error of the current
+	 * values smallest, by a golden section search.
+	 * 
+	 * @return the scale
+	 */
+	public double fitScale() {
+		double ratio = (Math.sqrt(5) - 1) / 2;
+		double low = 0;
+		double high = 4;
+		while (high - low > 1e-4) {
+			double a = high - ratio * (high - low);
+			double b = low + ratio * (high - low);
+			scale = a;
+			double errorA = error(null);
+			scale = b;
+			double errorB = error(null);
+			if (errorA < errorB) {
+				high = b;
+			} else {
+				low = a;
+			}
+		}
+		scale = (low + high) / 2;
+		return scale;
+	}
+
+	/**
+	 * Changes the values by gradient descent, each value by a step scaled by
+	 * the averages of its gradient and of its square, and checks the error by
+	 * evaluating the positions again from time to time.
+	 * 
+	 * @param epochs
+	 *            the number of steps
+	 * @param rate
+	 *            the largest step of a value
+	 * @param out
+	 *            the file the values are written to at each check, null for
+	 *            none
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public void tune(int epochs, double rate, String out) throws IOException {
+		double[] gradient = new double[values.length];
+		double[] mean = new double[values.length];
+		double[] meanSquare = new double[values.length];
+
+		for (int epoch = 1; epoch <= epochs; epoch++) {
+			double error = error(gradient);
+			for (int i = 0; i < values.length; i++) {
+				if (!tuned[i]) {
+					continue;
+				}
+				mean[i] = BETA1 * mean[i] + (1 - BETA1) * gradient[i];
+				meanSquare[i] = BETA2 * meanSquare[i] + (1 - BETA2)
+						* gradient[i] * gradient[i];
+				double m = mean[i] / (1 - Math.pow(BETA1, epoch));
+				double v = meanSquare[i] / (1 - Math.pow(BETA2, epoch));
+				values[i] -= rate * m / (Math.sqrt(v) + EPSILON);
+			}
+
+			if (epoch % CHECK_INTERVAL == 0 || epoch == epochs) {
+				setValues();
+				System.out.println("Epoch " + epoch + ": error " + error
+						+ ", evaluated " + error(null));
+				if (out != null) {
+					Evaluation.save(out);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stops the threads.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * The positions evaluated by one task, with their results, their
+	 * evaluations and the changes of their evaluations by each value.
+	 */
+	private class Batch {
+
+		int count;
+		// the pieces of each position, by piece code and square, and where
+		// the pieces of each position start
+		private short[] pieces = new short[BATCH_SIZE * 8];
+		private int[] starts = new int[BATCH_SIZE + 1];
+		private float[] results = new float[BATCH_SIZE];
+		// the evaluation of each position for white by the values of base
+		private int[] scores = new int[BATCH_SIZE];
+		// the changes of the evaluations by DELTA of a value: the position
+		// shifted left by 32 bits, the index of the value by 16 and the
+		// change
+		private long[] changes = new long[BATCH_SIZE * 8];
+		private int changeCount;
+		// the gradient of the error of these positions, and the evaluations
+		// of the values being tuned
+		double[] gradient = new double[values.length];
+		private double[] evaluations = new double[BATCH_SIZE];
+
+		private BitBoard board = new BitBoard();
+		private BitBoard empty = new BitBoard();
+
+		/**
+		 * Adds a position and its result.
+		 */
+		void add(BitBoard b, float result) {
+			int start = starts[count];
+			int end = start + Long.bitCount(b.allPieces);
+			if (end > pieces.length) {
+				pieces = Arrays.copyOf(pieces, pieces.length * 2);
+			}
+			for (long bits = b.allPieces; bits != 0; bits &= bits - 1) {
+				int sq = Long.numberOfTrailingZeros(bits);
+				pieces[start++] = (short) (b.squares[sq] << 6 | sq);
+			}
+			results[count] = result;
+			count++;
+			starts[count] = end;
+		}
+
+		/**
+		 * Evaluates a position for white with the values of Evaluation.
+		 */
+		private int evaluate(int position) {
+			board.copyFrom(empty);
+			for (int i = starts[position]; i < starts[position + 1]; i++) {
+				board.addPiece(pieces[i] >> 6, pieces[i] & 63);
+			}
+			return board.evaluate();
+		}
+
+		/**
+		 * Evaluates all the positions with the values of Evaluation.
+		 */
+		void evaluate() {
+			for (int i = 0; i < count; i++) {
+				scores[i] = evaluate(i);
+			}
+		}
+
+		/**
+		 * Keeps the changes of the evaluations by a value, which was
+		 * changed by DELTA in Evaluation.
+		 */
+		void measure(int value) {
+			for (int i = 0; i < count; i++) {
+				int change = evaluate(i) - scores[i];
+				if (change != 0) {
+					if (changeCount == changes.length) {
+						changes = Arrays.copyOf(changes, changes.length * 2);
+					}
+					changes[changeCount++] = (long) i << 32
+							| (long) value << 16 | (change & 0xFFFF);
+				}
+			}
+		}
+
+		/**
+		 * Adds up the squared errors of the positions with the values being
+		 * tuned, and their gradient if asked to.
+		 * 
+		 * @param change
+		 *            the change of each value from base, divided by DELTA
+		 */
+		double error(double[] change, double scale, boolean withGradient) {
+			for (int i = 0; i < count; i++) {
+				evaluations[i] = scores[i];
+			}
+			for (int i = 0; i < changeCount; i++) {
+				long c = changes[i];
+				evaluations[(int) (c >>> 32)] += (short) c
+						* change[(int) (c >>> 16) & 0xFFFF];
+			}
+
+			double error = 0;
+			for (int i = 0; i < count; i++) {
+				double expected = 1 / (1 + Math.pow(10, -scale
+						* evaluations[i] / 400));
+				double difference = results[i] - expected;
+				error += difference * difference;
+				// the derivative of the error by the evaluation, but for the
+				// factors common to all the positions
+				evaluations[i] = -difference * expected * (1 - expected);
+			}
+
+			if (withGradient) {
+				Arrays.fill(gradient, 0);
+				for (int i = 0; i < changeCount; i++) {
+					long c = changes[i];
+					gradient[(int) (c >>> 16) & 0xFFFF] += (short) c
+							* evaluations[(int) (c >>> 32)];
+				}
+			}
+			return error;
+		}
+	}
+
+	/**
+	 * Tunes the values of Evaluation on a file of positions and writes them
+	 * to a file.
+	 * 
+	 * @param args
+	 *            the options and the file of positions
+	 */
+	public static void main(String[] args) {
+		int threads = Runtime.getRuntime().availableProcessors();
+		int epochs = 1000;
+		double rate = 1;
+		String load = null;
+		String out = "evaluation.txt";
+		String positions = null;
+
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("-threads")) {
+					threads = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-epochs")) {
+					epochs = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-rate")) {
+					rate = Double.parseDouble(args[++i]);
+				} else if (args[i].equals("-load")) {
+					load = args[++i];
+				} else if (args[i].equals("-out")) {
+					out = args[++i];
+				} else if (positions == null) {
+					positions = args[i];
+				} else {
+					positions = null;
+					break;
+				}
+			}
+		} catch (RuntimeException e) {
+			positions = null;
+		}
+		if (positions == null) {
+			System.err.println("Usage: java Tuner [-threads n] [-epochs n] "
+					+ "[-rate r] [-load file] [-out file] positions");
+			System.err.println("Each position takes about 1 KB of memory, "
+					+ "give java a large enough heap with -Xmx.");
+			System.exit(1);
+		}
+
+		Tuner tuner = null;
+		try {
+			if (load != null) {
+				Evaluation.load(load);
+			}
+			tuner = new Tuner(threads);
+
+			long start = System.currentTimeMillis();
+			int skipped = tuner.read(positions);
+			System.out.println("Positions: " + tuner.positionCount
+					+ ", lines skipped: " + skipped);
+			if (tuner.positionCount == 0) {
+				System.exit(1);
+			}
+			tuner.measure();
+			System.out.println("Measured in "
+					+ (System.currentTimeMillis() - start) / 1000.0 + "s");
+			System.out.println("Scale: " + tuner.fitScale() + ", error: "
+					+ tuner.error(null));
+
+			tuner.tune(epochs, rate, out);
+			System.out.println("Done in "
+					+ (System.currentTimeMillis() - start) / 1000.0 + "s");
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+		} finally {
+			if (tuner != null) {
+				tuner.shutdown();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,424 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+/**
+ * A front end for the Universal Chess Interface, so that the AI can be run
+ * without a window by chess programs that talk to engines through standard
+ * input and output. The commands are read by the main thread while the search
+ * runs on a thread of its own, so that stop and ponderhit are answered at
+ * once.
+ */
+public class UCI implements SearchListener {
+
+	private static final String NAME = "ChessAI";
+	private static final String AUTHOR = "the ChessAI authors";
+
+	// the depth searched when no depth is given, deep enough to be stopped by
+	// the clock or by the stop command first
+	private static final int MAX_DEPTH = AI.MAX_PLY;
+	// the time of a move when only the clock of the other side is given, so
+	// that the search does not go on until stop
+	private static final long DEFAULT_MOVE_TIME = 1000;
+
+	// the names of the search modes for the SearchMode option, by mode
+	private static final String[] SEARCH_MODES = { "Serial", "RootSplit",
+			"LazySMP", "YBWC" };
+
+	// the position set by the last position command
+	private BitBoard position = new BitBoard(BitBoard.START_POSITION);
+
+	// the search running, and the thread running it, null if none
+	private AI ai;
+	private Thread searchThread;
+	// set while the best move must not be sent, which is while pondering and
+	// during an infinite search
+	private boolean holdBestMove;
+	// the moves expected by the last iteration completed
+	private int[] principalVariation = new int[0];
+
+	/**
+	 * Reads commands from standard input until quit is read or the input is
+	 * closed.
+	 * 
+	 * @param args
+	 *            the file of evaluation values written by the tuner to load,
+	 *            if there is one
+	 */
+	public static void main(String[] args) throws IOException {
+		// a pool of one thread searches like the serial search, the Threads
+		// option adds Lazy SMP helpers
+		AI.updateSearchMode(AI.LAZY_SMP);
+		AI.updateThreads(1);
+		if (args.length > 0) {
+			try {
+				AI.loadEvaluation(args[0]);
+			} catch (IOException e) {
+				send("info string " + e.getMessage());
+			}
+		}
+
+		UCI uci = new UCI();
+		BufferedReader in = new BufferedReader(new InputStreamReader(
+				System.in));
+		String line;
+		while ((line = in.readLine()) != null) {
+			if (!uci.execute(line.trim())) {
+				break;
+			}
+		}
+		uci.stopSearch();
+	}
+
+	/**
+	 * Carries out one command. Unknown commands are ignored, as the protocol
+	 * asks.
+	 * 
+	 * @param line
+	 *            the command and its arguments
+	 * @return false if the command is quit
+	 */
+	public boolean execute(String line) {
+		String[] tokens = line.split("\\s+");
+		String command = tokens[0];
+
+		if (command.equals("uci")) {
+			send("id name " + NAME);
+			send("id author " + AUTHOR);
+			send("option name Hash type spin default 16 min 1 max 4096");
+			send("option name Threads type spin default 1 min 1 max 256");
+			send("option name EvalCache type spin default 1024 min 0"
+					+ " max 65536");
+			send("option name PawnHash type spin default 256 min 1"
+					+ " max 65536");
+			send("option name SearchMode type combo default LazySMP"
+					+ " var Serial var RootSplit var LazySMP var YBWC");
+			send("option name NullMovePruning type check default true");
+			send("option name LateMoveReductions type check default true");
+			send("option name AttackEvaluation type check default true");
+			send("option name EvalFile type string default <empty>");
+			send("option name Ponder type check default false");
+			send("uciok");
+		} else if (command.equals("isready")) {
+			send("readyok");
+		} else if (command.equals("setoption")) {
+			stopSearch();
+			setOption(tokens);
+		} else if (command.equals("ucinewgame")) {
+			stopSearch();
+			AI.clearHash();
+		} else if (command.equals("position")) {
+			stopSearch();
+			setPosition(tokens);
+		} else if (command.equals("go")) {
+			stopSearch();
+			go(tokens);
+		} else if (command.equals("stop")) {
+			stopSearch();
+		} else if (command.equals("ponderhit")) {
+			ponderHit();
+		} else if (command.equals("quit")) {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Changes one of the options sent after the uci command, as in "setoption
+	 * name Hash value 64".
+	 */
+	private void setOption(String[] tokens) {
+		// the name may have spaces in it, up to the value, and so may the
+		// value, such as the path of a file
+		StringBuffer name = new StringBuffer();
+		String value = "";
+		for (int i = 2; i < tokens.length; i++) {
+			if (tokens[i].equals("value")) {
+				StringBuffer words = new StringBuffer();
+				for (i++; i < tokens.length; i++) {
+					if (words.length() > 0) {
+						words.append(' ');
+					}
+					words.append(tokens[i]);
+				}
+				value = words.toString();
+				break;
+			}
+			if (name.length() > 0) {
+				name.append(' ');
+			}
+			name.append(tokens[i]);
+		}
+
+		try {
+			String option = name.toString();
+			if (option.equalsIgnoreCase("Hash")) {
+				AI.updateHashSize(Integer.parseInt(value));
+			} else if (option.equalsIgnoreCase("EvalCache")) {
+				AI.updateEvalCacheSize(Integer.parseInt(value));
+			} else if (option.equalsIgnoreCase("PawnHash")) {
+				AI.updatePawnHashSize(Integer.parseInt(value));
+			} else if (option.equalsIgnoreCase("Threads")) {
+				AI.updateThreads(Integer.parseInt(value));
+			} else if (option.equalsIgnoreCase("SearchMode")) {
+				for (int mode = 0; mode < SEARCH_MODES.length; mode++) {
+					if (SEARCH_MODES[mode].equalsIgnoreCase(value)) {
+						AI.updateSearchMode(mode);
+					}
+				}
+			} else if (option.equalsIgnoreCase("NullMovePruning")) {
+				AI.updateNullMovePruning(Boolean.parseBoolean(value));
+			} else if (option.equalsIgnoreCase("LateMoveReductions")) {
+				AI.updateLateMoveReductions(Boolean.parseBoolean(value));
+			} else if (option.equalsIgnoreCase("AttackEvaluation")) {
+				AI.updateAttackEvaluation(Boolean.parseBoolean(value));
+			} else if (option.equalsIgnoreCase("EvalFile")) {
+				if (value.length() > 0 && !value.equals("<empty>")) {
+					AI.loadEvaluation(value);
+					position.computeScores();
+				}
+			}
+		} catch (NumberFormatException e) {
+			send("info string bad value " + value);
+		} catch (IOException e) {
+			send("info string " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Sets the position to search, as in "position startpos moves e2e4" or
+	 * "position fen <fen> moves e2e4".
+	 */
+	private void setPosition(String[] tokens) {
+		int i = 1;
+		BitBoard b;
+		try {
+			if (tokens.length > 1 && tokens[1].equals("startpos")) {
+				b = new BitBoard(BitBoard.START_POSITION);
+				i = 2;
+			} else if (tokens.length > 1 && tokens[1].equals("fen")) {
+				StringBuffer fen = new StringBuffer();
+				for (i = 2; i < tokens.length && !tokens[i].equals("moves"); i++) {
+					fen.append(tokens[i]).append(' ');
+				}
+				b = new BitBoard(fen.toString());
+			} else {
+				return;
+			}
+		} catch (IllegalArgumentException e) {
+			send("info string " + e.getMessage());
+			return;
+		}
+
+		// play the moves, skipping the word moves
+		int[] moves = new int[AI.MAX_MOVES];
+		for (i++; i < tokens.length; i++) {
+			int move = findMove(b, tokens[i], moves);
+			if (move == PackedMove.NONE) {
+				send("info string illegal move " + tokens[i]);
+				break;
+			}
+			b.makeMove(move);
+		}
+		position = b;
+	}
+
+	/**
+	 * Finds the legal move of a position written in coordinate notation.
+	 * 
+	 * @return the packed move, PackedMove.NONE if it is not legal
+	 */
+	private static int findMove(BitBoard b, String notation, int[] moves) {
+		int count = b.generateMoves(moves, 0);
+		for (int i = 0; i < count; i++) {
+			if (PackedMove.toString(moves[i]).equals(notation)) {
+				return moves[i];
+			}
+		}
+		return PackedMove.NONE;
+	}
+
+	/**
+	 * Starts searching the position, as in "go wtime 60000 btime 60000" or
+	 * "go depth 8". Without a limit the search goes on until stop.
+	 */
+	private void go(String[] tokens) {
+		long time = -1;
+		long inc = 0;
+		int movesToGo = 0;
+		long moveTime = 0;
+		int depth = 0;
+		long nodes = 0;
+		boolean infinite = false;
+		boolean ponder = false;
+		boolean otherClock = false;
+		String us = position.sideToMove == BitBoard.WHITE ? "w" : "b";
+
+		try {
+			for (int i = 1; i < tokens.length; i++) {
+				String name = tokens[i];
+				if (name.equals("infinite")) {
+					infinite = true;
+				} else if (name.equals("ponder")) {
+					ponder = true;
+				} else if (i + 1 < tokens.length) {
+					if (name.equals(us + "time")) {
+						time = Long.parseLong(tokens[++i]);
+					} else if (name.equals("wtime") || name.equals("btime")) {
+						otherClock = true;
+						i++;
+					} else if (name.equals(us + "inc")) {
+						inc = Long.parseLong(tokens[++i]);
+					} else if (name.equals("movestogo")) {
+						movesToGo = Integer.parseInt(tokens[++i]);
+					} else if (name.equals("movetime")) {
+						moveTime = Long.parseLong(tokens[++i]);
+					} else if (name.equals("depth")) {
+						depth = Integer.parseInt(tokens[++i]);
+					} else if (name.equals("nodes")) {
+						nodes = Long.parseLong(tokens[++i]);
+					}
+				}
+			}
+		} catch (NumberFormatException e) {
+			send("info string bad go command");
+			return;
+		}
+
+		final AI search = new AI(position);
+		search.setListener(this);
+		search.setDepth(depth > 0 ? depth : MAX_DEPTH);
+		search.setNodeLimit(nodes);
+		if (moveTime > 0) {
+			search.setMoveTime(moveTime);
+		} else {
+			search.setMoveTime(0);
+			if (time >= 0) {
+				search.setClock(time, inc);
+				search.setMovesToGo(movesToGo);
+			} else if (otherClock && !infinite) {
+				search.setMoveTime(DEFAULT_MOVE_TIME);
+			}
+		}
+		search.setPondering(ponder);
+
+		synchronized (this) {
+			ai = search;
+			holdBestMove = ponder || infinite;
+			principalVariation = new int[0];
+		}
+		searchThread = new Thread(new Runnable() {
+
+			public void run() {
+				int move = search.getBestPackedMove();
+				sendStatistics(search);
+				sendBestMove(move);
+			}
+		}, "search");
+		searchThread.start();
+	}
+
+	/**
+	 * Sends what a search found out about itself, which the protocol has no
+	 * command for, as info strings.
+	 */
+	private static void sendStatistics(AI search) {
+		// the positions searched by each thread show how well they scale
+		StringBuffer threads = new StringBuffer("info string threads");
+		long[] nodes = search.getThreadNodes();
+		for (int i = 0; i < nodes.length; i++) {
+			threads.append(' ').append(nodes[i]);
+		}
+		send(threads.toString());
+		send("info string pawn hash hits "
+				+ Math.round(search.getPawnHitRate() * 1000) / 10.0 + "%");
+	}
+
+	/**
+	 * Sends the best move once the search is allowed to, with the reply
+	 * expected from the opponent if there is one.
+	 */
+	private synchronized void sendBestMove(int move) {
+		while (holdBestMove) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				break;
+			}
+		}
+
+		if (move == PackedMove.NONE) {
+			send("bestmove 0000");
+		} else if (principalVariation.length > 1
+				&& principalVariation[0] == move) {
+			send("bestmove " + PackedMove.toString(move) + " ponder "
+					+ PackedMove.toString(principalVariation[1]));
+		} else {
+			send("bestmove " + PackedMove.toString(move));
+		}
+	}
+
+	/**
+	 * The opponent played the move pondered on, the search goes on with the
+	 * clock running.
+	 */
+	private synchronized void ponderHit() {
+		if (ai != null) {
+			ai.ponderHit();
+			holdBestMove = false;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Stops the running search, and waits until it has sent its best move.
+	 */
+	private void stopSearch() {
+		if (searchThread == null) {
+			return;
+		}
+		synchronized (this) {
+			ai.stop();
+			holdBestMove = false;
+			notifyAll();
+		}
+		try {
+			searchThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		searchThread = null;
+		ai = null;
+	}
+
+	public void iterationDone(int depth, int score, long nodes, long time,
+			int[] pv) {
+		synchronized (this) {
+			principalVariation = pv;
+		}
+
+		StringBuffer info = new StringBuffer("info depth " + depth);
+		if (score >= AI.MATE - AI.MAX_PLY) {
+			info.append(" score mate " + (AI.MATE - score + 1) / 2);
+		} else if (score <= -AI.MATE + AI.MAX_PLY) {
+			info.append(" score mate -" + (AI.MATE + score) / 2);
+		} else {
+			info.append(" score cp " + score);
+		}
+		info.append(" nodes " + nodes + " nps " + nodes * 1000
+				/ Math.max(time, 1) + " time " + time + " pv");
+		for (int i = 0; i < pv.length; i++) {
+			info.append(' ').append(PackedMove.toString(pv[i]));
+		}
+		send(info.toString());
+	}
+
+	/**
+	 * Writes a line to standard output, one thread at a time.
+	 */
+	private static synchronized void send(String line) {
+		System.out.println(line);
+		System.out.flush();
+	}
+
+}
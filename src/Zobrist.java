@@ -0,0 +1,83 @@
+/**
+ * Random numbers used to give every position a 64 bit key. The key of a
+ * position is the exclusive or of the numbers of every piece on its square,
+ * of the side to move if it is black, of the castling rights and of the en
+ * passant file, so it can be updated with a few operations when a move is
+ * made.
+ */
+public final class Zobrist {
+
+	// indexed by [piece code][square], as in BitBoard
+	public static final long[][] PIECES = new long[12][64];
+	// the numbers of PIECES for pawns and 0 for the other pieces, so that
+	// the pawns alone give a key to the pawn structure
+	public static final long[][] PAWNS = new long[12][64];
+	// indexed by the castling rights of BitBoard
+	public static final long[] CASTLING = new long[16];
+	public static final long[] EN_PASSANT = new long[8];
+	// added when black is to move
+	public static final long SIDE;
+
+	// state of the random number generator, fixed so that the keys are the
+	// same on every run
+	private static long seed = 0x9E3779B97F4A7C15L;
+
+	static {
+		for (int piece = 0; piece < 12; piece++) {
+			for (int sq = 0; sq < 64; sq++) {
+				PIECES[piece][sq] = random();
+			}
+		}
+		PAWNS[BitBoard.PAWN] = PIECES[BitBoard.PAWN];
+		PAWNS[6 + BitBoard.PAWN] = PIECES[6 + BitBoard.PAWN];
+
+		// each castling right has its own number, the rights combine them
+		long[] rights = new long[4];
+		for (int i = 0; i < 4; i++) {
+			rights[i] = random();
+		}
+		for (int r = 0; r < 16; r++) {
+			for (int i = 0; i < 4; i++) {
+				if ((r & (1 << i)) != 0) {
+					CASTLING[r] ^= rights[i];
+				}
+			}
+		}
+
+		for (int file = 0; file < 8; file++) {
+			EN_PASSANT[file] = random();
+		}
+		SIDE = random();
+	}
+
+	private Zobrist() {
+	}
+
+	/**
+	 * Returns the number for the castling rights and the en passant file.
+	 * 
+	 * @param castlingRights
+	 *            the castling rights, as in BitBoard
+	 * @param enPassantFile
+	 *            the en passant file, -1 if none
+	 * @return the number to add to the key
+	 */
+	public static long state(int castlingRights, int enPassantFile) {
+		long key = CASTLING[castlingRights];
+		if (enPassantFile >= 0) {
+			key ^= EN_PASSANT[enPassantFile];
+		}
+		return key;
+	}
+
+	/**
+	 * Returns the next number of a xorshift generator.
+	 */
+	private static long random() {
+		seed ^= seed >>> 12;
+		seed ^= seed << 25;
+		seed ^= seed >>> 27;
+		return seed * 2685821657736338717L;
+	}
+
+}